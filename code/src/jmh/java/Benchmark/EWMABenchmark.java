@@ -0,0 +1,48 @@
+package Benchmark;
+
+import Algorithm.util.EWMAUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocked parallel scan against the sequential loop, parallelism = 1 is the sequential loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class EWMABenchmark {
+    @Param({"1000000", "20000000"})
+    public int n;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean timeAware;
+
+    private long[] td_time;
+    private double[] td_dirty;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(666);
+        td_time = new long[n];
+        td_dirty = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = i * 300_000L + (random.nextInt(20) == 0 ? 300_000L : 0);
+            td_dirty[i] = Math.sin(2 * Math.PI * i / 144) + 0.1 * random.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public double[] ewma() {
+        EWMAUtil ewmaUtil = new EWMAUtil(td_time, td_dirty, 0.2, timeAware, parallelism);
+        ewmaUtil.repair();
+        return ewmaUtil.getRepaired();
+    }
+}
@@ -0,0 +1,70 @@
+package Benchmark;
+
+import Algorithm.util.EWMAUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 64-beta sweep against four separate runs that each materialise td_repair and score it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EWMASweepBenchmark {
+    @Param({"1000000"})
+    public int n;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private long[] td_time;
+    private double[] td_clean, td_dirty;
+    private double[] betas64, betas4;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(666);
+        td_time = new long[n];
+        td_clean = new double[n];
+        td_dirty = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = i;
+            td_clean[i] = Math.sin(2 * Math.PI * i / 144);
+            td_dirty[i] = td_clean[i] + 0.1 * random.nextGaussian();
+        }
+        betas64 = new double[64];
+        for (int k = 0; k < 64; ++k)
+            betas64[k] = (k + 1) / 65.0;
+        betas4 = new double[]{0.2, 0.4, 0.6, 0.8};
+    }
+
+    @Benchmark
+    public double[][] sweep64() {
+        return EWMAUtil.sweep(td_clean, td_dirty, null, betas64, parallelism);
+    }
+
+    @Benchmark
+    public double separate4() {
+        double rtn = 0;
+        for (double beta : betas4) {
+            EWMAUtil ewmaUtil = new EWMAUtil(td_time, td_dirty, beta, false, 1);
+            ewmaUtil.repair();
+            double[] td_repair = ewmaUtil.getRepaired();
+            // same metrics as the sweep
+            double sumAbs = 0, sumSq = 0, sumApe = 0;
+            for (int i = 0; i < n; ++i) {
+                double e = td_clean[i] - td_repair[i];
+                sumAbs += Math.abs(e);
+                sumSq += e * e;
+                sumApe += Math.abs(e / (td_clean[i] + 0.001) * 100);
+            }
+            rtn += sumAbs + Math.sqrt(sumSq / n) + sumApe;
+        }
+        return rtn;
+    }
+}
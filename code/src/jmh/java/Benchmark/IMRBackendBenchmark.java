@@ -0,0 +1,88 @@
+package Benchmark;
+
+import Algorithm.util.IMRBackend;
+import Algorithm.util.IMRUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IMR linear algebra per backend, for several p and n.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IMRBackendBenchmark {
+    @Param({"jama", "ejml", "primitive"})
+    public String backend;
+
+    @Param({"1", "3", "5", "8"})
+    public int p;
+
+    @Param({"10000", "100000"})
+    public int n;
+
+    private long[] td_time;
+    private double[] td_dirty, td_label;
+    private boolean[] td_bool;
+
+    private IMRBackend imrBackend;
+    private double[][] a;
+    private double[] b, phi, yhat;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(666);
+        td_time = new long[n];
+        td_dirty = new double[n];
+        td_label = new double[n];
+        td_bool = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = i;
+            double clean = Math.sin(2 * Math.PI * i / 144) + 0.1 * random.nextGaussian();
+            td_dirty[i] = random.nextDouble() < 0.05 ? clean + random.nextGaussian() : clean;
+            td_bool[i] = i < p || random.nextDouble() < 0.5;
+            td_label[i] = td_bool[i] ? clean : td_dirty[i];
+        }
+
+        double[] x = new double[(n - p) * p];
+        for (int i = 0; i < x.length; ++i)
+            x[i] = random.nextGaussian();
+        imrBackend = IMRBackend.create(backend, p);
+        imrBackend.setDesign(x, n - p, p);
+
+        a = new double[p][p];
+        b = new double[p];
+        for (int r = 0; r < n - p; ++r)
+            for (int i = 0; i < p; ++i) {
+                for (int j = 0; j < p; ++j)
+                    a[i][j] += x[r * p + i] * x[r * p + j];
+                b[i] += x[r * p + i];
+            }
+        phi = new double[p];
+        yhat = new double[n - p];
+    }
+
+    @Benchmark
+    public double[] imr() {
+        IMRUtil imrUtil = new IMRUtil(td_time, td_dirty, td_label, td_bool, p, 0.3, 100, IMRBackend.create(backend, p));
+        imrUtil.repair();
+        return imrUtil.getRepaired();
+    }
+
+    @Benchmark
+    public double[] solve() {
+        imrBackend.solve(a, b, phi);
+        return phi;
+    }
+
+    @Benchmark
+    public double[] combine() {
+        imrBackend.combine(b, yhat);
+        return yhat;
+    }
+}
@@ -0,0 +1,73 @@
+package Benchmark;
+
+import Algorithm.util.Decomposition;
+import Algorithm.util.LinearMedian;
+import Algorithm.util.MovingMedian;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The kernels under SRD: one MovingMedian.update, LinearMedian.getMedian of a column of n / period
+ * points, and a whole Decomposition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+    private static final int UPDATES = 1 << 16;
+
+    @Param({"10000", "100000"})
+    public int n;
+
+    @Param({"24", "144", "1440"})
+    public int period;
+
+    private long[] td_time;
+    private double[] td, column, work;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(666);
+        td_time = new long[n];
+        td = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = i;
+            td[i] = Math.sin(2 * Math.PI * i / period) + 0.1 * random.nextGaussian();
+        }
+        column = new double[n / period];
+        for (int j = 0; j < column.length; ++j)
+            column[j] = td[j * period];
+        work = new double[column.length];
+    }
+
+    /**
+     * per update, the window is full after the first period updates
+     */
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public double movingMedianUpdate() {
+        MovingMedian movingMedian = new MovingMedian(period);
+        for (int i = 0; i < UPDATES; ++i)
+            movingMedian.update(td[i % n]);
+        return movingMedian.getMedian();
+    }
+
+    /**
+     * getMedian reorders its input, every call selects from a fresh copy
+     */
+    @Benchmark
+    public double linearMedian() {
+        System.arraycopy(column, 0, work, 0, column.length);
+        return LinearMedian.getMedian(work, work.length);
+    }
+
+    @Benchmark
+    public double[] decomposition() throws Exception {
+        return new Decomposition(td_time, td, period).getResidual();
+    }
+}
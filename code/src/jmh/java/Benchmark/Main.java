@@ -0,0 +1,19 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * org.openjdk.jmh.Main writing its results as json by default, to jmh-result.json unless -rff is given.
+ */
+public class Main {
+    public static void main(String[] args) throws Exception {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        if (!argList.contains("-rf")) {
+            argList.add("-rf");
+            argList.add("json");
+        }
+        org.openjdk.jmh.Main.main(argList.toArray(new String[0]));
+    }
+}
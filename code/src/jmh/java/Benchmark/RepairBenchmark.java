@@ -0,0 +1,98 @@
+package Benchmark;
+
+import Algorithm.EWMA;
+import Algorithm.IMR;
+import Algorithm.Lsgreedy;
+import Algorithm.SCREEN;
+import Algorithm.SRD;
+import Algorithm.util.LabelMask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every repair algorithm on a synthetic seasonal series, over length, period and error rate (%).
+ * Errors are segments of up to errorLength points shifted by one gaussian factor times errorRange
+ * times the value range, drawn as AddNoise draws them (AddNoise is in the default package), and
+ * half of the points are labeled for IMR, as in Experiment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class RepairBenchmark {
+    @Param({"srd", "screen", "lsgreedy", "imr", "ewma"})
+    public String algorithm;
+
+    @Param({"10000", "100000"})
+    public int n;
+
+    @Param({"24", "144"})
+    public int period;
+
+    @Param({"1", "5", "10"})
+    public double errorRate;
+
+    private static final double errorRange = 2.0, k = 6.0, labelRate = 0.5;
+    private static final int errorLength = 25, max_iter = 5;
+
+    private long[] td_time;
+    private double[] td_dirty, td_label;
+    private LabelMask mask;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(666);
+        td_time = new long[n];
+        double[] td_clean = new double[n];
+        td_dirty = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = 1564588800000L + i * 300_000L;
+            td_clean[i] = Math.sin(2 * Math.PI * i / period) + 0.001 * i + 0.1 * random.nextGaussian();
+        }
+        double range = range(td_clean);
+        int errFlag = 0;
+        double errFactor = 0;
+        for (int i = 0; i < n; ++i) {
+            if (random.nextDouble() * 100 < errorRate / errorLength) {
+                errFlag = random.nextInt(errorLength) + 1;
+                errFactor = random.nextGaussian();
+            }
+            if (errFlag > 0) {
+                --errFlag;
+                td_dirty[i] = td_clean[i] + errFactor * range * errorRange;
+            } else {
+                td_dirty[i] = td_clean[i];
+            }
+        }
+
+        mask = LabelMask.sample(n, (int) (n * labelRate), 666);
+        td_label = td_dirty.clone();
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1))
+            td_label[i] = td_clean[i];
+    }
+
+    private static double range(double[] td) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double v : td) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        return max - min;
+    }
+
+    @Benchmark
+    public double[] repair() throws Exception {
+        return switch (algorithm) {
+            case "srd" -> new SRD(td_time, td_dirty, period, k, max_iter).getTd_repair();
+            case "screen" -> new SCREEN(td_time, td_dirty).getTd_repair();
+            case "lsgreedy" -> new Lsgreedy(td_time, td_dirty).getTd_repair();
+            case "imr" -> new IMR(td_time, td_dirty, td_label, mask).getTd_repair();
+            case "ewma" -> new EWMA(td_time, td_dirty).getTd_repair();
+            default -> throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        };
+    }
+}
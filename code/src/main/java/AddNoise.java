@@ -1,9 +1,4 @@
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Random;
 
@@ -16,7 +11,7 @@ public class AddNoise {
     private final int err_length;  // error rate rate/1000
 
     private final double td_range;  // time series data range
-    private final Random random;
+    private final int seed;
 
     public AddNoise(double[] td_clean, double rate, double range, int length, int seed) throws Exception {
         this.td_clean = td_clean;
@@ -25,16 +20,16 @@ public class AddNoise {
         this.err_rate = rate;
         this.err_range = range;
         this.err_length = length;
-        this.random = new Random(seed);
+        this.seed = seed;
 
-        this.td_range = calRange();
+        this.td_range = calRange(td_clean);
 
         addNoise();
     }
 
-    private double calRange() {  // data range
+    static double calRange(double[] td_clean) {  // data range
         double v_min = Double.MAX_VALUE, v_max = Double.MIN_VALUE;
-        for (double value : this.td_clean) {
+        for (double value : td_clean) {
             if (value < v_min) v_min = value;
             if (value > v_max) v_max = value;
         }
@@ -42,21 +37,42 @@ public class AddNoise {
     }
 
     private void addNoise() {
+        applyNoise(td_clean, noisePattern(td_clean.length, err_rate, err_length, seed), td_range, err_range, td_dirty);
+    }
+
+    /**
+     * the random draws of addNoise, which do not depend on the data: NaN for a clean point,
+     * otherwise the gaussian factor of its error. The pattern of a prefix is the prefix of the pattern.
+     */
+    static double[] noisePattern(int n, double rate, int length, int seed) {
+        Random random = new Random(seed);
+        double[] pattern = new double[n];
         int err_flag = 0;
-        double err_range_now = 0.0;
-        for (int i = 0; i < td_clean.length; i++) {
-            if (random.nextDouble() * 100. < err_rate / err_length) {
-                err_flag = random.nextInt(err_length) + 1;
-                err_range_now = random.nextGaussian() * td_range * err_range;
+        double err_factor = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (random.nextDouble() * 100. < rate / length) {
+                err_flag = random.nextInt(length) + 1;
+                err_factor = random.nextGaussian();
             }
 
             if (err_flag > 0) {
                 --err_flag;
+                pattern[i] = err_factor;
+            } else {
+                pattern[i] = Double.NaN;
+            }
+        }
+        return pattern;
+    }
+
+    static void applyNoise(double[] td_clean, double[] pattern, double td_range, double err_range, double[] td_dirty) {
+        for (int i = 0; i < td_clean.length; i++) {
+            if (!Double.isNaN(pattern[i])) {
+                double err_range_now = pattern[i] * td_range * err_range;
                 double new_value = td_clean[i] + err_range_now;
-                BigDecimal b = new BigDecimal(new_value);
-                this.td_dirty[i] = b.setScale(8, RoundingMode.HALF_UP).doubleValue();
+                td_dirty[i] = NoiseInjector.round(new_value);
             } else {
-                this.td_dirty[i] = td_clean[i];
+                td_dirty[i] = td_clean[i];
             }
         }
     }
@@ -66,17 +82,15 @@ public class AddNoise {
     }
 
     public void writeRepairResultToFile(String targetFileName) {
-        File writeFile = new File(targetFileName);
+        writeRepairResultToFile(targetFileName, null);
+    }
+
+    /**
+     * with the real timestamps, the row index when td_time is null
+     */
+    public void writeRepairResultToFile(String targetFileName, long[] td_time) {
         try {
-            BufferedWriter writeText = new BufferedWriter(new FileWriter(writeFile));
-            writeText.write("timestamp,value");
-            for (int j = 0; j < this.td_dirty.length; j++) {
-                writeText.newLine();
-                double val = this.td_dirty[j];
-                writeText.write(j + "," + val);
-            }
-            writeText.flush();
-            writeText.close();
+            new SeriesWriter().writeCsv(targetFileName, td_time, td_dirty);
         } catch (IOException e) {
             System.out.println("Error");
         }
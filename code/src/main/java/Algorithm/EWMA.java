@@ -1,20 +1,45 @@
 package Algorithm;
 
+import Algorithm.util.EWMAUtil;
+import Algorithm.util.RepairEvents;
+
 public class EWMA {
     private final long[] td_time;
     private final double[] td_dirty;
     private final double[] td_repair;
-    private double beta = 0.2;
+    private final double beta;
+    private final boolean timeAware;  // decay by the elapsed time instead of the point count
+    private final int parallelism;
     private final long cost_time;
 
     public EWMA(long[] td_time, double[] td_dirty) throws Exception {
+        this(td_time, td_dirty, 0.2);
+    }
+
+    public EWMA(long[] td_time, double[] td_dirty, double beta) throws Exception {
+        this(td_time, td_dirty, beta, false, 1);
+    }
+
+    public EWMA(long[] td_time, double[] td_dirty, double beta, boolean timeAware, int parallelism) throws Exception {
+        this(td_time, td_dirty, new double[td_dirty.length], beta, timeAware, parallelism);
+    }
+
+    /**
+     * writes the repair into td_repair, which may be td_dirty
+     */
+    public EWMA(long[] td_time, double[] td_dirty, double[] td_repair, double beta, boolean timeAware, int parallelism) throws Exception {
         this.td_time = td_time;
         this.td_dirty = td_dirty;
-        this.td_repair = new double[td_dirty.length];
+        this.td_repair = td_repair;
+        this.beta = beta;
+        this.timeAware = timeAware;
+        this.parallelism = parallelism;
+        RepairEvents.Repair event = RepairEvents.Repair.start("EWMA", td_dirty.length);
         long startTime = System.currentTimeMillis();
         this.repair();
         long endTime = System.currentTimeMillis();
         this.cost_time = endTime - startTime;
+        event.commit(0, td_dirty, td_repair);
 //        System.out.println("EWMA time cost:" + cost_time + "ms");
     }
 
@@ -24,13 +49,7 @@ public class EWMA {
     public long getCost_time() {return cost_time;}
 
     private void repair() throws Exception {
-        double last_ewma = td_dirty[0];
-        td_repair[0] = last_ewma;
-
-        for (int i = 1; i < td_dirty.length; ++i) {  // repair
-            double new_value = this.beta * last_ewma + (1 - beta) * td_dirty[i];
-            td_repair[i] = new_value;
-            last_ewma = new_value;
-        }
+        EWMAUtil ewmaUtil = new EWMAUtil(td_time, td_dirty, td_repair, beta, timeAware, parallelism);
+        ewmaUtil.repair();
     }
 }
@@ -0,0 +1,79 @@
+package Algorithm;
+
+import Algorithm.util.EWMAUtil;
+
+/**
+ * Accuracy of EWMA for many betas with a single pass over td_dirty.
+ * On one core the sweep costs about K/8 separate EWMA runs for K betas, the beta groups
+ * of 16 need as many cores as parallelism to do better.
+ */
+public class EWMASweep {
+    private final double[] td_clean;
+    private final double[] td_dirty;
+    private final boolean[] td_bool;
+    private final double[] betas;
+    private final int parallelism;
+    private final double[] MAE, RMSE, MAPE;
+    private final long cost_time;
+
+    public EWMASweep(double[] td_clean, double[] td_dirty, boolean[] td_bool, double[] betas) {
+        this(td_clean, td_dirty, td_bool, betas, 1);
+    }
+
+    public EWMASweep(double[] td_clean, double[] td_dirty, boolean[] td_bool, double[] betas, int parallelism) {
+        this.td_clean = td_clean;
+        this.td_dirty = td_dirty;
+        this.td_bool = td_bool;
+        this.betas = betas;
+        this.parallelism = parallelism;
+        this.MAE = new double[betas.length];
+        this.RMSE = new double[betas.length];
+        this.MAPE = new double[betas.length];
+
+        long startTime = System.currentTimeMillis();
+        this.sweep();
+        long endTime = System.currentTimeMillis();
+        this.cost_time = endTime - startTime;
+    }
+
+    private void sweep() {
+        double[][] err = EWMAUtil.sweep(td_clean, td_dirty, td_bool, betas, parallelism);
+        for (int k = 0; k < betas.length; ++k) {
+            double count = err[k][3];
+            MAE[k] = err[k][0] / count;
+            RMSE[k] = Math.sqrt(err[k][1] / count);
+            MAPE[k] = err[k][2] / count;
+        }
+    }
+
+    public double[] getBetas() {
+        return betas;
+    }
+
+    public double[] getMAE() {
+        return MAE;
+    }
+
+    public double[] getRMSE() {
+        return RMSE;
+    }
+
+    public double[] getMAPE() {
+        return MAPE;
+    }
+
+    /**
+     * beta with the lowest RMSE
+     */
+    public double getBestBeta() {
+        int best = 0;
+        for (int k = 1; k < betas.length; ++k)
+            if (RMSE[k] < RMSE[best])
+                best = k;
+        return betas[best];
+    }
+
+    public long getCost_time() {
+        return cost_time;
+    }
+}
@@ -1,6 +1,10 @@
 package Algorithm;
 
+import Algorithm.util.IMRBackend;
+import Algorithm.util.IMRParallelUtil;
 import Algorithm.util.IMRUtil;
+import Algorithm.util.LabelMask;
+import Algorithm.util.RepairEvents;
 
 public class IMR {
     private final long[] td_time;
@@ -8,18 +12,56 @@ public class IMR {
     private double[] td_repair;
     private final double[] td_label;
     private final boolean[] td_bool;
+    private final LabelMask mask;
+    private final int numWorkers;
+    private final int syncInterval;
     private final long cost_time;
 
+    private int iterationNum;
+    private double[] workerThroughput;
+
     public IMR(long[] td_time, double[] td_dirty, double[] td_label, boolean[] td_bool) {
+        this(td_time, td_dirty, td_label, td_bool, 1, 0);
+    }
+
+    /**
+     * numWorkers > 1 runs the segment-parallel mode, where every worker repairs up to syncInterval
+     * points between two synchronisations of phi
+     */
+    public IMR(long[] td_time, double[] td_dirty, double[] td_label, boolean[] td_bool, int numWorkers, int syncInterval) {
+        this(td_time, td_dirty, null, td_label, td_bool, null, numWorkers, syncInterval);
+    }
+
+    public IMR(long[] td_time, double[] td_dirty, double[] td_label, LabelMask mask) {
+        this(td_time, td_dirty, null, td_label, null, mask, 1, 0);
+    }
+
+    /**
+     * writes the repair into td_repair, which may be td_dirty
+     */
+    public IMR(long[] td_time, double[] td_dirty, double[] td_repair, double[] td_label, LabelMask mask) {
+        this(td_time, td_dirty, td_repair, td_label, null, mask, 1, 0);
+    }
+
+    /**
+     * td_repair is null for a new array
+     */
+    private IMR(long[] td_time, double[] td_dirty, double[] td_repair, double[] td_label, boolean[] td_bool, LabelMask mask, int numWorkers, int syncInterval) {
         this.td_time = td_time;
         this.td_dirty = td_dirty;
+        this.td_repair = td_repair;
         this.td_label = td_label;
         this.td_bool = td_bool;
+        this.mask = mask;
+        this.numWorkers = numWorkers;
+        this.syncInterval = syncInterval;
 
+        RepairEvents.Repair event = RepairEvents.Repair.start("IMR", td_dirty.length);
         long startTime = System.currentTimeMillis();
         this.repair();
         long endTime = System.currentTimeMillis();
         this.cost_time = endTime - startTime;
+        event.commit(iterationNum, td_dirty, td_repair);
 //        System.out.println("IMR time cost:" + cost_time + "ms");
     }
 
@@ -31,9 +73,37 @@ public class IMR {
         return cost_time;
     }
 
+    /**
+     * iterations for the sequential mode, epochs for the parallel mode
+     */
+    public int getIterationNum() {
+        return iterationNum;
+    }
+
+    /**
+     * candidate rows scanned per second by each worker, null for the sequential mode
+     */
+    public double[] getWorkerThroughput() {
+        return workerThroughput;
+    }
+
     private void repair() {
-        IMRUtil imrUtil = new IMRUtil(td_time, td_dirty, td_label, td_bool, 1, 0.3, 1000);
-        imrUtil.repair();
-        td_repair = imrUtil.getRepaired();
+        if (numWorkers > 1) {
+            IMRParallelUtil imrUtil = new IMRParallelUtil(td_time, td_dirty, td_label, td_bool, 1, 0.3, 1000, numWorkers, syncInterval);
+            imrUtil.repair();
+            if (td_repair == null)
+                td_repair = imrUtil.getRepaired();
+            else
+                System.arraycopy(imrUtil.getRepaired(), 0, td_repair, 0, td_repair.length);
+            iterationNum = imrUtil.getEpochNum();
+            workerThroughput = imrUtil.getWorkerThroughput();
+        } else {
+            LabelMask labels = mask != null ? mask : LabelMask.of(td_bool);
+            if (td_repair == null)
+                td_repair = new double[td_dirty.length];
+            IMRUtil imrUtil = new IMRUtil(td_time, td_dirty, td_repair, td_label, labels, 1, 0.3, 1000, IMRBackend.create(1));
+            imrUtil.repair();
+            iterationNum = imrUtil.getIterationNum();
+        }
     }
 }
@@ -0,0 +1,89 @@
+package Algorithm;
+
+import Algorithm.util.IMRStreamUtil;
+
+/**
+ * Replays a labeled series as a live feed through the online IMR.
+ * The label of point i is confirmed labelDelay points after it arrived.
+ */
+public class IMRStream {
+    private final long[] td_time;
+    private final double[] td_dirty;
+    private final double[] td_repair;
+    private final double[] td_label;
+    private final boolean[] td_bool;
+    private final int lag;
+    private final int labelDelay;
+    private final long cost_time;
+
+    private long maxLatency; // ns per point
+    private int repairNum;
+
+    public IMRStream(long[] td_time, double[] td_dirty, double[] td_label, boolean[] td_bool) {
+        this(td_time, td_dirty, td_label, td_bool, 64, 16);
+    }
+
+    public IMRStream(long[] td_time, double[] td_dirty, double[] td_label, boolean[] td_bool, int lag, int labelDelay) {
+        this.td_time = td_time;
+        this.td_dirty = td_dirty;
+        this.td_repair = new double[td_dirty.length];
+        this.td_label = td_label;
+        this.td_bool = td_bool;
+        this.lag = lag;
+        this.labelDelay = labelDelay;
+
+        long startTime = System.currentTimeMillis();
+        this.repair();
+        long endTime = System.currentTimeMillis();
+        this.cost_time = endTime - startTime;
+    }
+
+    public double[] getTd_repair() {
+        return td_repair;
+    }
+
+    public long getCost_time() {
+        return cost_time;
+    }
+
+    /**
+     * worst time spent on one incoming point, in ns
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * points per second
+     */
+    public double getThroughput() {
+        return cost_time == 0 ? td_dirty.length * 1000.0 : td_dirty.length * 1000.0 / cost_time;
+    }
+
+    public int getRepairNum() {
+        return repairNum;
+    }
+
+    private void repair() {
+        int[] k = new int[1];
+        IMRStreamUtil imrUtil = new IMRStreamUtil(1, 0.3, 0.999, lag, (time, value) -> td_repair[k[0]++] = value);
+
+        for (int i = 0; i < td_dirty.length; ++i) {
+            long start = System.nanoTime();
+            imrUtil.append(td_time[i], td_dirty[i]);
+            int j = i - labelDelay;
+            if (j >= 0 && td_bool[j])
+                imrUtil.label(td_time[j], td_label[j]);
+            maxLatency = Math.max(maxLatency, System.nanoTime() - start);
+        }
+        // labels that are still due
+        for (int j = Math.max(0, td_dirty.length - labelDelay); j < td_dirty.length; ++j)
+            if (td_bool[j])
+                imrUtil.label(td_time[j], td_label[j]);
+        imrUtil.flush();
+
+        for (int i = 0; i < td_dirty.length; ++i)
+            if (td_repair[i] != td_dirty[i] && !td_bool[i])
+                repairNum++;
+    }
+}
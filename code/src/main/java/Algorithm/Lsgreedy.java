@@ -1,20 +1,32 @@
 package Algorithm;
 
 import Algorithm.util.LsgreedyUtil;
+import Algorithm.util.RepairEvents;
 
 public class Lsgreedy {
     private final long[] td_time;
     private final double[] td_dirty;
-    private double[] td_repair;
+    private final double[] td_repair;
+    private int stepNum;
     private final long cost_time;
 
     public Lsgreedy(long[] td_time, double[] td_dirty) throws Exception {
+        this(td_time, td_dirty, new double[td_dirty.length]);
+    }
+
+    /**
+     * writes the repair into td_repair, which may be td_dirty
+     */
+    public Lsgreedy(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception {
         this.td_time = td_time;
         this.td_dirty = td_dirty;
+        this.td_repair = td_repair;
+        RepairEvents.Repair event = RepairEvents.Repair.start("Lsgreedy", td_dirty.length);
         long startTime = System.currentTimeMillis();
         this.repair();
         long endTime = System.currentTimeMillis();
         this.cost_time = endTime - startTime;
+        event.commit(stepNum, td_dirty, td_repair);
 //        System.out.println("Lsgreedy time cost:" + cost_time + "ms");
     }
 
@@ -23,9 +35,13 @@ public class Lsgreedy {
     }
     public long getCost_time() {return cost_time;}
 
+    public int getStepNum() {
+        return stepNum;
+    }
+
     private void repair() throws Exception {
-        LsgreedyUtil lsgreedyUtil = new LsgreedyUtil(td_time, td_dirty);
+        LsgreedyUtil lsgreedyUtil = new LsgreedyUtil(td_time, td_dirty, td_repair);
         lsgreedyUtil.repair();
-        td_repair = lsgreedyUtil.getRepaired();
+        stepNum = lsgreedyUtil.getStepNum();
     }
 }
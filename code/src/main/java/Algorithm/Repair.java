@@ -0,0 +1,90 @@
+package Algorithm;
+
+import Algorithm.util.LabelMask;
+
+/**
+ * A repair algorithm configured once and run on any number of series, writing into a buffer of
+ * the caller. td_repair may be td_dirty: every repair works in place, so a RepairPipeline runs
+ * all its stages on one buffer. Repairs keep only their configuration and can be shared between
+ * threads.
+ * <p>
+ * The Repair events of an in-place repair count no repaired points.
+ */
+public interface Repair {
+    String getName();
+
+    /**
+     * @param td_repair the length of td_dirty, or td_dirty itself
+     * @return iterations of SRD and IMR, steps of Lsgreedy, 0 for a single pass
+     */
+    int repair(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception;
+
+    @FunctionalInterface
+    interface Body {
+        int repair(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception;
+    }
+
+    static Repair of(String name, Body body) {
+        return new Repair() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public int repair(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception {
+                if (td_repair.length != td_dirty.length)
+                    throw new IllegalArgumentException(td_repair.length + " repair points for " + td_dirty.length + " dirty");
+                return body.repair(td_time, td_dirty, td_repair);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    static Repair srd(int period, double k, int max_iter) {
+        return of("SRD", (td_time, td_dirty, td_repair) ->
+                new SRD(td_time, td_dirty, td_repair, period, k, max_iter).getIterationNum());
+    }
+
+    static Repair screen() {
+        return of("SCREEN", (td_time, td_dirty, td_repair) -> {
+            new SCREEN(td_time, td_dirty, td_repair);
+            return 0;
+        });
+    }
+
+    static Repair lsgreedy() {
+        return of("Lsgreedy", (td_time, td_dirty, td_repair) ->
+                new Lsgreedy(td_time, td_dirty, td_repair).getStepNum());
+    }
+
+    static Repair ewma(double beta) {
+        return of("EWMA", (td_time, td_dirty, td_repair) -> {
+            new EWMA(td_time, td_dirty, td_repair, beta, false, 1);
+            return 0;
+        });
+    }
+
+    /**
+     * bound to the labels of the one series it repairs
+     */
+    static Repair imr(double[] td_label, LabelMask mask) {
+        return of("IMR", (td_time, td_dirty, td_repair) ->
+                new IMR(td_time, td_dirty, td_repair, td_label, mask).getIterationNum());
+    }
+
+    /**
+     * repair on the residual of the seasonal decomposition
+     */
+    static Repair residual(int period, Repair repair) {
+        return new ResidualRepair(period, repair);
+    }
+
+    static Repair pipeline(Repair... stages) {
+        return new RepairPipeline(stages);
+    }
+}
@@ -0,0 +1,45 @@
+package Algorithm;
+
+/**
+ * Stages run one after the other on one buffer: the first repairs td_dirty into td_repair and
+ * every later one repairs td_repair in place, so no stage copies or allocates the series, e.g.
+ * SRD and then SCREEN on the residual:
+ * <pre>
+ * Repair.pipeline(Repair.srd(144, 6, 5), Repair.residual(144, Repair.screen()))
+ * </pre>
+ */
+public class RepairPipeline implements Repair {
+    private final Repair[] stages;
+    private final String name;
+
+    public RepairPipeline(Repair... stages) {
+        if (stages.length == 0)
+            throw new IllegalArgumentException("A pipeline needs a stage");
+        this.stages = stages.clone();
+        StringBuilder sb = new StringBuilder();
+        for (Repair stage : stages)
+            sb.append(sb.length() == 0 ? "" : "+").append(stage.getName());
+        this.name = sb.toString();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the iterations of all stages
+     */
+    @Override
+    public int repair(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception {
+        int iterations = stages[0].repair(td_time, td_dirty, td_repair);
+        for (int i = 1; i < stages.length; ++i)
+            iterations += stages[i].repair(td_time, td_repair, td_repair);
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,39 @@
+package Algorithm;
+
+import Algorithm.util.Decomposition;
+
+/**
+ * Decomposes the series, repairs its residual in place with another repair and adds the trend and
+ * seasonal back, so that a repair without a seasonal model, such as SCREEN, sees no seasonality.
+ */
+public class ResidualRepair implements Repair {
+    private final int period;
+    private final Repair repair;
+
+    public ResidualRepair(int period, Repair repair) {
+        this.period = period;
+        this.repair = repair;
+    }
+
+    @Override
+    public String getName() {
+        return repair.getName() + "@residual";
+    }
+
+    @Override
+    public int repair(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception {
+        if (td_repair.length != td_dirty.length)
+            throw new IllegalArgumentException(td_repair.length + " repair points for " + td_dirty.length + " dirty");
+        Decomposition de = new Decomposition(td_time, td_dirty, period);
+        double[] seasonal = de.getSeasonal(), trend = de.getTrend(), residual = de.getResidual();
+        int iterations = repair.repair(td_time, residual, residual);
+        for (int i = 0; i < td_dirty.length; ++i)
+            td_repair[i] = trend[i] + seasonal[i % period] + residual[i];
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
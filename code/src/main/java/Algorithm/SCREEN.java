@@ -1,23 +1,34 @@
 package Algorithm;
 
+import Algorithm.util.RepairEvents;
 import Algorithm.util.ScreenUtil;
 
 public class SCREEN {
     private final long[] td_time;
     private final double[] td_dirty;
-    private double[] td_repair;
+    private final double[] td_repair;
     //    private double minSpeeds;
 //    private double maxSpeeds;
     private final long cost_time;
 
     public SCREEN(long[] td_time, double[] td_dirty) throws Exception {
+        this(td_time, td_dirty, new double[td_dirty.length]);
+    }
+
+    /**
+     * writes the repair into td_repair, which may be td_dirty
+     */
+    public SCREEN(long[] td_time, double[] td_dirty, double[] td_repair) throws Exception {
         this.td_time = td_time;
         this.td_dirty = td_dirty;
+        this.td_repair = td_repair;
 
+        RepairEvents.Repair event = RepairEvents.Repair.start("SCREEN", td_dirty.length);
         long startTime = System.currentTimeMillis();
         this.repair();
         long endTime = System.currentTimeMillis();
         this.cost_time = endTime - startTime;
+        event.commit(0, td_dirty, td_repair);
 //        System.out.println("Screen time cost:" + cost_time + "ms");
     }
 
@@ -27,8 +38,7 @@ public class SCREEN {
     public long getCost_time() {return cost_time;}
 
     private void repair() throws Exception {
-        ScreenUtil screenUtil = new ScreenUtil(td_time, td_dirty);
+        ScreenUtil screenUtil = new ScreenUtil(td_time, td_dirty, td_repair);
         screenUtil.repair();
-        td_repair = screenUtil.getRepaired();
     }
 }
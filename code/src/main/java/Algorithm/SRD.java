@@ -3,6 +3,8 @@ package Algorithm;
 import java.util.ArrayList;
 
 import Algorithm.util.Decomposition;
+import Algorithm.util.Recorder;
+import Algorithm.util.RepairEvents;
 
 public class SRD {
     private final long[] td_time;
@@ -16,46 +18,66 @@ public class SRD {
     private double[] seasonal, trend, residual;
     private final int size;
     private final long cost_time;
+    private int iterationNum;
 
     public SRD(long[] td_time, double[] td_dirty, int period, double k, int max_iter) throws Exception {
+        this(td_time, td_dirty, new double[td_dirty.length], period, k, max_iter);
+    }
+
+    /**
+     * writes the repair into td_repair, which may be td_dirty
+     */
+    public SRD(long[] td_time, double[] td_dirty, double[] td_repair, int period, double k, int max_iter) throws Exception {
         this.td_time = td_time;
         this.td_dirty = td_dirty;
-        this.td_repair = new double[td_dirty.length];
+        this.td_repair = td_repair;
         this.period = period;
         this.k = k;
         this.max_iter = max_iter;
 
         this.size = td_dirty.length;
 
+        RepairEvents.Repair event = RepairEvents.Repair.start("SRD", size);
         long startTime = System.currentTimeMillis();
         this.repair();
         long endTime = System.currentTimeMillis();
         this.cost_time = endTime - startTime;
+        event.commit(iterationNum, td_dirty, td_repair);
 //        System.out.println("SRRD time cost:" + cost_time + "ms");
     }
 
     private void repair() throws Exception {
+        Recorder recorder = Recorder.current();
         System.arraycopy(td_dirty, 0, td_repair, 0, td_dirty.length);
 
         int h = 0;
         for (; h < max_iter; ++h) {
+            RepairEvents.Iteration event = RepairEvents.Iteration.start();
+            recorder.begin("srd.decompose");
             Decomposition de = new Decomposition(td_time, td_repair, period);
             seasonal = de.getSeasonal();
             trend = de.getTrend();
             residual = de.getResidual();
+            recorder.end();
 
+            recorder.begin("srd.estimate");
             estimate();
+            recorder.end();
 
-            boolean flag = true;
+            recorder.begin("srd.generate");
+            int repaired = 0;
             for (int i = 0; i < size; ++i) {
                 if (sub(residual[i], mu) > k * sigma) {
-                    flag = false;
+                    repaired++;
                     td_repair[i] = generate(i);
                 }
             }
-            if (flag) break;
+            recorder.end();
+            recorder.iteration(repaired);
+            event.commit("SRD", h + 1, repaired);
+            if (repaired == 0) break;
         }
-        System.out.println("Stop after " + (h + 1) + " iterations");
+        iterationNum = Math.min(h + 1, max_iter);
     }
 
 //    private void estimate() {
@@ -143,4 +165,8 @@ public class SRD {
     public long getCost_time() {
         return cost_time;
     }
+
+    public int getIterationNum() {
+        return iterationNum;
+    }
 }
@@ -0,0 +1,25 @@
+package Algorithm.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter over a LongAdder, add() is lock-free and allocates nothing.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
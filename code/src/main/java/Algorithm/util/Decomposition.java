@@ -25,6 +25,8 @@ public class Decomposition {
         if (period > td.length)
             throw new Exception("Error: Period exceed the size of time series!");
 
+        Recorder recorder = Recorder.current();
+        RepairEvents.Decompose event = RepairEvents.Decompose.start(td.length, period);
         // constant
         int interval = period / 2;
         int size = td.length;
@@ -33,6 +35,7 @@ public class Decomposition {
         MovingMedian movingMedian = new MovingMedian(period);
 
         // step 1: trend
+        recorder.begin("decomposition.trend");
         if (period % 2 == 1) {
             throw new Exception("Period must be even.");
         } else {
@@ -47,8 +50,10 @@ public class Decomposition {
 
         // trend extension
         constant_ext();
+        recorder.end();
 
         // step 2: de-trend
+        recorder.begin("decomposition.seasonal");
         for (int i = 0; i < size; ++i)
             de_trend[i] = td[i] - trend[i];
 
@@ -76,9 +81,14 @@ public class Decomposition {
         for (int i = 0; i < period; ++i)
             seasonal[i] = seasonal[i] - median_s;
 
+        recorder.end();
+
         // step 3: residual
+        recorder.begin("decomposition.residual");
         for (int i = 0; i < size; ++i)
             residual[i] = de_trend[i] - seasonal[i % period];
+        recorder.end();
+        event.commit();
     }
 
     private void constant_ext() {
@@ -0,0 +1,253 @@
+package Algorithm.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * EWMA r[i] = a[i] * r[i-1] + (1 - a[i]) * x[i], with a[i] = beta, or
+ * a[i] = beta^((t[i] - t[i-1]) / interval) for time-aware decay.
+ * <p>
+ * The recurrence is a composition of affine maps, so the parallel mode is a blocked scan:
+ * every block first runs from r = 0 and records the product of its a[i], the block carries
+ * are then chained sequentially, and finally every block adds carry * prod(a) to its values.
+ */
+public class EWMAUtil {
+    private static final int MIN_BLOCK = 1 << 16;
+    private static final int SWEEP_GROUP = 16;
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final long[] time;
+    private final double[] original;
+    private final double[] repaired;
+    private final double beta;
+    private final boolean timeAware;
+    private final int parallelism;
+
+    private double[] decay; // a[i], only for time-aware decay
+    private double[] blockMul, carry;
+
+    public EWMAUtil(long[] time, double[] original, double beta, boolean timeAware, int parallelism) {
+        this(time, original, new double[original.length], beta, timeAware, parallelism);
+    }
+
+    /**
+     * repaired may be original, every r[i] is written after x[i] is read
+     */
+    public EWMAUtil(long[] time, double[] original, double[] repaired, double beta, boolean timeAware, int parallelism) {
+        this.time = time;
+        this.original = original;
+        this.repaired = repaired;
+        this.beta = beta;
+        this.timeAware = timeAware;
+        this.parallelism = parallelism;
+    }
+
+    public double[] getRepaired() {
+        return repaired;
+    }
+
+    public void repair() {
+        int n = original.length;
+        if (n == 0)
+            return;
+        Recorder recorder = Recorder.current();
+        if (timeAware) {
+            recorder.begin("ewma.decay");
+            setDecay();
+            recorder.end();
+        }
+
+        recorder.begin("ewma.scan");
+        try {
+            scanBlocks(n);
+        } finally {
+            recorder.end();
+        }
+    }
+
+    private void scanBlocks(int n) {
+        int blockNum = Math.min(parallelism * 4, (n + MIN_BLOCK - 1) / MIN_BLOCK);
+        if (parallelism <= 1 || blockNum <= 1) {
+            scan(0, n, original[0]);
+            return;
+        }
+
+        blockMul = new double[blockNum];
+        carry = new double[blockNum];
+        ForkJoinPool pool = pool(parallelism);
+        // pass 1: local scans
+        pool.invoke(new ScanTask(0, blockNum, blockNum, n, false));
+        // chain the carries, block 0 is exact
+        carry[0] = repaired[blockEnd(0, blockNum, n) - 1];
+        for (int b = 1; b < blockNum; ++b)
+            carry[b] = repaired[blockEnd(b, blockNum, n) - 1] + blockMul[b] * carry[b - 1];
+        // pass 2: apply the incoming carry
+        pool.invoke(new ScanTask(1, blockNum, blockNum, n, true));
+    }
+
+    /**
+     * one pool per parallelism for the whole JVM, its workers are daemon threads
+     */
+    private static ForkJoinPool pool(int parallelism) {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private static int blockEnd(int b, int blockNum, int n) {
+        return (int) ((long) n * (b + 1) / blockNum);
+    }
+
+    private double a(int i) {
+        return timeAware ? decay[i] : beta;
+    }
+
+    /**
+     * r over [lo, hi) with r[lo - 1] = init, returns the product of a over the range
+     */
+    private double scan(int lo, int hi, double init) {
+        double last = init, mul = 1;
+        int i = lo;
+        if (lo == 0) {
+            repaired[0] = last = original[0];
+            i = 1;
+        }
+        if (!timeAware) {
+            double b1 = 1 - beta;
+            for (; i < hi; ++i) {
+                last = beta * last + b1 * original[i];
+                repaired[i] = last;
+            }
+            return Math.pow(beta, hi - lo);
+        }
+        for (; i < hi; ++i) {
+            double a = decay[i];
+            last = a * last + (1 - a) * original[i];
+            repaired[i] = last;
+            mul *= a;
+        }
+        return mul;
+    }
+
+    private void applyCarry(int lo, int hi, double in) {
+        double mul = 1;
+        for (int i = lo; i < hi; ++i) {
+            mul *= a(i);
+            if (mul == 0)
+                break; // the carry has decayed away
+            repaired[i] += mul * in;
+        }
+    }
+
+    /**
+     * evaluate K betas in one pass without materialising the repaired series,
+     * err[k] = {sum |e|, sum e^2, sum |e / (clean + 0.001)| * 100, count} over the unlabeled points
+     */
+    public static double[][] sweep(double[] clean, double[] original, boolean[] bool, double[] betas) {
+        return sweep(clean, original, bool, betas, 1);
+    }
+
+    /**
+     * the betas are split into groups of SWEEP_GROUP, and the groups run in parallel.
+     * On one core a beta costs about 1/8 of a separate run, so K betas cost about K/8 runs:
+     * 64 betas only beat four separate runs with parallelism 4 or more on as many cores
+     */
+    public static double[][] sweep(double[] clean, double[] original, boolean[] bool, double[] betas, int parallelism) {
+        int K = betas.length;
+        double[][] rtn = new double[K][];
+        int groupNum = (K + SWEEP_GROUP - 1) / SWEEP_GROUP;
+        if (parallelism <= 1 || groupNum <= 1) {
+            sweep(clean, original, bool, betas, 0, K, rtn);
+            return rtn;
+        }
+        pool(Math.min(parallelism, groupNum)).submit(() -> IntStream.range(0, groupNum).parallel().forEach(g ->
+                sweep(clean, original, bool, betas, g * SWEEP_GROUP, Math.min(K, (g + 1) * SWEEP_GROUP), rtn))).join();
+        return rtn;
+    }
+
+    private static void sweep(double[] clean, double[] original, boolean[] bool, double[] allBetas, int from, int to, double[][] rtn) {
+        int n = original.length, K = to - from;
+        double[] betas = Arrays.copyOfRange(allBetas, from, to);
+        double[] last = new double[K];
+        double[] sumAbs = new double[K], sumSq = new double[K], sumApe = new double[K];
+        long count = 0;
+
+        if (n > 0) {
+            Arrays.fill(last, original[0]);
+            if (bool == null || !bool[0]) {
+                double e = clean[0] - original[0];
+                Arrays.fill(sumAbs, Math.abs(e));
+                Arrays.fill(sumSq, e * e);
+                Arrays.fill(sumApe, Math.abs(e * 100 / (clean[0] + 0.001)));
+                count++;
+            }
+        }
+
+        // plain loops over k, so that the JIT can vectorise them
+        for (int i = 1; i < n; ++i) {
+            double x = original[i];
+            if (bool != null && bool[i]) {
+                for (int k = 0; k < K; ++k)
+                    last[k] = betas[k] * (last[k] - x) + x;
+                continue;
+            }
+            double c = clean[i], inv = 100 / (c + 0.001);
+            for (int k = 0; k < K; ++k) {
+                double l = betas[k] * (last[k] - x) + x;
+                last[k] = l;
+                double e = c - l;
+                sumAbs[k] += Math.abs(e);
+                sumSq[k] += e * e;
+                sumApe[k] += Math.abs(e * inv);
+            }
+            count++;
+        }
+
+        for (int k = 0; k < K; ++k)
+            rtn[from + k] = new double[]{sumAbs[k], sumSq[k], sumApe[k], count};
+    }
+
+    private void setDecay() {
+        int n = original.length;
+        decay = new double[n];
+        if (n < 2)
+            return;
+        // the regular interval, estimated on a prefix
+        double[] interval = ScreenUtil.variation(Arrays.copyOf(time, Math.min(n, MIN_BLOCK)));
+        double mid = ScreenUtil.median(interval);
+        if (mid <= 0)
+            mid = 1;
+        for (int i = 1; i < n; ++i)
+            decay[i] = Math.pow(beta, (time[i] - time[i - 1]) / mid);
+    }
+
+    private class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, blockNum, n;
+        private final boolean second;
+
+        ScanTask(int from, int to, int blockNum, int n, boolean second) {
+            this.from = from;
+            this.to = to;
+            this.blockNum = blockNum;
+            this.n = n;
+            this.second = second;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScanTask(from, mid, blockNum, n, second), new ScanTask(mid, to, blockNum, n, second));
+                return;
+            }
+            int lo = from == 0 ? 0 : blockEnd(from - 1, blockNum, n), hi = blockEnd(from, blockNum, n);
+            if (second)
+                applyCarry(lo, hi, carry[from - 1]);
+            else
+                blockMul[from] = scan(lo, hi, 0);
+        }
+    }
+}
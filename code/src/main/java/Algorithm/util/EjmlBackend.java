@@ -0,0 +1,55 @@
+package Algorithm.util;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+/**
+ * EJML backend, X, phi and yhat are wrapped without copy and the solve goes to reusable workspaces.
+ */
+public class EjmlBackend implements IMRBackend {
+    private DMatrixRMaj xMatrix, phiMatrix, yhatMatrix;
+    private DMatrixRMaj aMatrix, bMatrix, solMatrix;
+    private LinearSolverDense<DMatrixRMaj> solver;
+
+    @Override
+    public void setDesign(double[] x, int rowNum, int p) {
+        xMatrix = DMatrixRMaj.wrap(rowNum, p, x);
+        phiMatrix = null;
+        yhatMatrix = null;
+    }
+
+    @Override
+    public void set(int row, int col, double val) {
+        xMatrix.unsafe_set(row, col, val);
+    }
+
+    @Override
+    public void solve(double[][] a, double[] b, double[] phi) {
+        int p = b.length;
+        if (solver == null || aMatrix.numRows != p) {
+            aMatrix = new DMatrixRMaj(p, p);
+            bMatrix = new DMatrixRMaj(p, 1);
+            solMatrix = new DMatrixRMaj(p, 1);
+            solver = LinearSolverFactory_DDRM.linear(p);
+        }
+        for (int i = 0; i < p; ++i)
+            System.arraycopy(a[i], 0, aMatrix.data, i * p, p);
+        System.arraycopy(b, 0, bMatrix.data, 0, p);
+        if (!solver.setA(aMatrix)) // singular, same as Jama's inverse
+            throw new RuntimeException("Matrix is singular.");
+        solver.solve(bMatrix, solMatrix);
+        System.arraycopy(solMatrix.data, 0, phi, 0, p);
+    }
+
+    @Override
+    public void combine(double[] phi, double[] yhat) {
+        // the callers keep passing the same arrays, so the wrappers are made once
+        if (phiMatrix == null || phiMatrix.data != phi)
+            phiMatrix = DMatrixRMaj.wrap(phi.length, 1, phi);
+        if (yhatMatrix == null || yhatMatrix.data != yhat)
+            yhatMatrix = DMatrixRMaj.wrap(yhat.length, 1, yhat);
+        CommonOps_DDRM.mult(xMatrix, phiMatrix, yhatMatrix);
+    }
+}
@@ -0,0 +1,140 @@
+package Algorithm.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * MAE, RMSE, MAPE and max error of a repair over the unlabeled points, fed point by point or
+ * chunk by chunk. The sums are Neumaier-compensated, so accumulators of partitions can be merged
+ * without losing precision to the order of the additions.
+ */
+public class ErrorAccumulator {
+    private static final int BLOCK = 1 << 16;
+
+    // {|e|, e^2, |e / (clean + 0.001)| * 100}, with their compensations
+    private final double[] sum = new double[3];
+    private final double[] comp = new double[3];
+    private double maxError;
+    private long count, labeledCount;
+
+    public void add(double clean, double repair) {
+        double e = clean - repair, abs = Math.abs(e);
+        add(0, abs);
+        add(1, e * e);
+        add(2, Math.abs(e / (clean + 0.001) * 100));
+        if (abs > maxError) maxError = abs;
+        count++;
+    }
+
+    /**
+     * a labeled point, only counted
+     */
+    public void addLabeled() {
+        labeledCount++;
+    }
+
+    /**
+     * points [from, to), mask may be null when nothing is labeled
+     */
+    public void add(double[] clean, double[] repair, LabelMask mask, int from, int to) {
+        int label = mask == null ? -1 : mask.nextSetBit(from);
+        for (int i = from; i < to; ) {
+            int end = label < 0 || label >= to ? to : label;
+            for (; i < end; ++i)
+                add(clean[i], repair[i]);
+            if (end == to)
+                break;
+            labeledCount++;
+            i = label + 1;
+            label = mask.nextSetBit(i);
+        }
+    }
+
+    public void add(double[] clean, double[] repair, boolean[] td_bool, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (td_bool != null && td_bool[i])
+                labeledCount++;
+            else
+                add(clean[i], repair[i]);
+        }
+    }
+
+    public ErrorAccumulator merge(ErrorAccumulator other) {
+        for (int k = 0; k < 3; ++k) {
+            add(k, other.sum[k]);
+            comp[k] += other.comp[k];
+        }
+        maxError = Math.max(maxError, other.maxError);
+        count += other.count;
+        labeledCount += other.labeledCount;
+        return this;
+    }
+
+    private void add(int k, double x) {
+        double s = sum[k], t = s + x;
+        comp[k] += Math.abs(s) >= Math.abs(x) ? (s - t) + x : (x - t) + s;
+        sum[k] = t;
+    }
+
+    /**
+     * score whole arrays in blocks of a fixed size, merged in order, so the result does not
+     * depend on the number of threads
+     */
+    public static ErrorAccumulator score(double[] clean, double[] repair, LabelMask mask, int parallelism) {
+        int n = repair.length, blockNum = (n + BLOCK - 1) / BLOCK;
+        ErrorAccumulator[] parts = new ErrorAccumulator[blockNum];
+        if (parallelism <= 1 || blockNum <= 1) {
+            for (int b = 0; b < blockNum; ++b)
+                parts[b] = scoreBlock(clean, repair, mask, b, n);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> IntStream.range(0, blockNum).parallel()
+                        .forEach(b -> parts[b] = scoreBlock(clean, repair, mask, b, n))).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        ErrorAccumulator rtn = new ErrorAccumulator();
+        for (ErrorAccumulator part : parts)
+            rtn.merge(part);
+        return rtn;
+    }
+
+    private static ErrorAccumulator scoreBlock(double[] clean, double[] repair, LabelMask mask, int b, int n) {
+        ErrorAccumulator acc = new ErrorAccumulator();
+        acc.add(clean, repair, mask, b * BLOCK, Math.min(n, (b + 1) * BLOCK));
+        return acc;
+    }
+
+    private double total(int k) {
+        return sum[k] + comp[k];
+    }
+
+    public double getMAE() {
+        return total(0) / count;
+    }
+
+    public double getRMSE() {
+        return Math.sqrt(total(1) / count);
+    }
+
+    public double getMAPE() {
+        return total(2) / count;
+    }
+
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * unlabeled points scored
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getLabeledCount() {
+        return labeledCount;
+    }
+}
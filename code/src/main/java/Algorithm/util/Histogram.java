@@ -0,0 +1,110 @@
+package Algorithm.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative longs with log-linear buckets, as in HdrHistogram: values
+ * up to 8 are exact, above that every power of two is split into 8 buckets, so a bucket is within
+ * 12.5% of its values. Bucket j holds (largest(j - 1), largest(j)], so every power of two is the
+ * largest value of a bucket. record() allocates nothing.
+ * <p>
+ * Exported as a Prometheus histogram with one bucket per power of two in [2^minExp, 2^maxExp],
+ * counting the values up to and including it (le), multiplied by scale (1e-9 for nanoseconds in seconds).
+ */
+public class Histogram {
+    private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS) * SUB + SUB + 1; // slot(Long.MAX_VALUE) + 1
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder(), sum = new LongAdder();
+    private final double scale;
+    private final int minExp, maxExp;
+
+    Histogram(double scale, int minExp, int maxExp) {
+        this.scale = scale;
+        this.minExp = minExp;
+        this.maxExp = maxExp;
+    }
+
+    static int index(long v) {
+        if (v < SUB)
+            return (int) Math.max(v, 0);
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        return (e - SUB_BITS + 1) * SUB + (int) (v >>> (e - SUB_BITS)) - SUB;
+    }
+
+    /**
+     * the smallest value of index bucket i
+     */
+    static long lowerBound(int i) {
+        if (i < SUB)
+            return i;
+        return (long) (SUB + i % SUB) << (i / SUB - 1);
+    }
+
+    /**
+     * bucket of v, shifted by one against index so that the bounds are inclusive at the top
+     */
+    static int slot(long v) {
+        return v <= 0 ? 0 : index(v - 1) + 1;
+    }
+
+    /**
+     * the largest value of bucket j
+     */
+    static long largest(int j) {
+        return j == 0 ? 0 : j == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(j);
+    }
+
+    public void record(long v) {
+        buckets.incrementAndGet(slot(v));
+        count.increment();
+        sum.add(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * the smallest value of the bucket holding the given percentile, 0 when empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+            total += buckets.get(i);
+        long rank = (long) Math.ceil(total * percentile / 100), seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0)
+                return i == 0 ? 0 : largest(i - 1) + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * _bucket, _sum and _count lines, labels is empty or ends with a comma
+     */
+    void write(StringBuilder sb, String name, String labels) {
+        long cumulative = 0;
+        int i = 0;
+        for (int exp = minExp; exp <= maxExp; ++exp) {
+            long bound = 1L << exp;
+            for (; i < BUCKETS && largest(i) <= bound; ++i)
+                cumulative += buckets.get(i);
+            sb.append(name).append("_bucket{").append(labels).append("le=\"").append(bound * scale).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        for (; i < BUCKETS; ++i)
+            cumulative += buckets.get(i);
+        sb.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String braces = MetricsRegistry.braces(labels);
+        sb.append(name).append("_sum").append(braces).append(' ').append(getSum() * scale).append('\n');
+        sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+}
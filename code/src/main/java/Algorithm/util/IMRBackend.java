@@ -0,0 +1,49 @@
+package Algorithm.util;
+
+/**
+ * Dense linear algebra used by IMR.
+ * <p>
+ * The backend owns the design matrix X (rowNum * p, row-major) between setDesign and the end
+ * of the repair, and every change of X goes through set. Instances keep workspaces and are
+ * not thread-safe, so create one per repair.
+ */
+public interface IMRBackend {
+    void setDesign(double[] x, int rowNum, int p);
+
+    void set(int row, int col, double val);
+
+    /**
+     * phi = A^-1 * b
+     */
+    void solve(double[][] a, double[] b, double[] phi);
+
+    /**
+     * yhat = X * phi
+     */
+    void combine(double[] phi, double[] yhat);
+
+    /**
+     * jama, ejml, primitive, or auto which picks primitive for small p
+     */
+    static IMRBackend create(String name, int p) {
+        switch (name) {
+            case "jama":
+                return new JamaBackend();
+            case "ejml":
+                return new EjmlBackend();
+            case "primitive":
+                return new PrimitiveBackend();
+            case "auto":
+                return p <= 8 ? new PrimitiveBackend() : new EjmlBackend();
+            default:
+                throw new IllegalArgumentException("Unknown IMR backend: " + name);
+        }
+    }
+
+    /**
+     * backend named by the system property imr.backend, auto by default
+     */
+    static IMRBackend create(int p) {
+        return create(System.getProperty("imr.backend", "auto"), p);
+    }
+}
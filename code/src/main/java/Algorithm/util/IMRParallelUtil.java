@@ -0,0 +1,281 @@
+package Algorithm.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Segment-parallel IMR.
+ * <p>
+ * The rows of the AR(p) regression are split into contiguous segments, one per worker.
+ * Each epoch the workers compute partial normal-equation sums (A = X'X, B = X'y) over their
+ * own rows, the partial sums are merged and phi is solved once. Every worker then repairs up
+ * to syncInterval candidates of its own segment, keeping a private copy of A and B that it
+ * updates with its own repairs only. The repairs of all workers together are bounded by
+ * maxNumIterations, as in the sequential mode. The p values left of a segment (the halo) belong to the
+ * previous worker and are refreshed at every synchronisation.
+ */
+public class IMRParallelUtil {
+    private final boolean[] td_bool; // whether the point is labeled
+    private final long[] td_time;
+    private final double[] td_dirty;
+    private final double[] td_label;
+    private final double[] td_repair;
+    private final int p; // AR(p) model
+    private final double delta; // converge
+    private final int maxNumIterations; // max iteration number
+    private final int numWorkers;
+    private final int syncInterval; // local iterations between two synchronisations of phi
+
+    private int epochNum, repairNum;
+    private Segment[] segments;
+
+    public IMRParallelUtil(long[] td_time, double[] td_dirty, double[] td_label, boolean[] td_bool,
+                           int p, double delta, int maxNumIterations, int numWorkers, int syncInterval) {
+        this.td_bool = td_bool;
+        this.td_time = td_time;
+        this.td_dirty = td_dirty;
+        this.td_label = td_label;
+        this.td_repair = new double[td_dirty.length];
+        this.p = p;
+        this.delta = delta;
+        this.maxNumIterations = maxNumIterations;
+        this.numWorkers = numWorkers;
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * @throws IllegalStateException carrying the failure of a worker, or when interrupted
+     */
+    public void repair() {
+        int size = td_dirty.length;
+        int rowNum = size - p;
+
+        // form z
+        double[] zs = new double[size];
+        for (int i = 0; i < size; ++i) {
+            zs[i] = td_label[i] - td_dirty[i];
+        }
+
+        // every segment needs at least p rows, so that its halo is owned by the previous one
+        int segNum = Math.max(1, Math.min(numWorkers, rowNum / Math.max(p, 1)));
+        segments = new Segment[segNum];
+        for (int w = 0; w < segNum; ++w) {
+            int lo = (int) ((long) rowNum * w / segNum);
+            int hi = (int) ((long) rowNum * (w + 1) / segNum);
+            segments[w] = new Segment(lo, hi);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(segNum);
+        try {
+            double[][] a = new double[p][p];
+            double[] b = new double[p];
+            int[] quota = new int[segNum];
+            List<Callable<Integer>> syncTasks = new ArrayList<>(), repairTasks = new ArrayList<>();
+            for (int w = 0; w < segNum; ++w) {
+                Segment seg = segments[w];
+                int idx = w;
+                syncTasks.add(() -> seg.sync(zs));
+                repairTasks.add(() -> seg.repair(zs, a, b, quota[idx]));
+            }
+
+            epochNum = 0;
+            repairNum = 0;
+            while (true) {
+                epochNum++;
+                RepairEvents.Iteration event = RepairEvents.Iteration.start();
+
+                // partial sums per segment, then global reduction
+                invokeAll(pool, syncTasks);
+                for (double[] row : a) Arrays.fill(row, 0);
+                Arrays.fill(b, 0);
+                for (Segment seg : segments) {
+                    for (int i = 0; i < p; ++i) {
+                        for (int j = 0; j < p; ++j) a[i][j] += seg.a[i][j];
+                        b[i] += seg.b[i];
+                    }
+                }
+
+                // local repair within each segment, the budget left is split over the segments
+                int left = maxNumIterations - repairNum;
+                for (int w = 0; w < segNum; ++w)
+                    quota[w] = Math.min(syncInterval, left / segNum + (w < left % segNum ? 1 : 0));
+                int repaired = 0;
+                for (int r : invokeAll(pool, repairTasks)) repaired += r;
+                repairNum += repaired;
+                event.commit("IMR", epochNum, repaired);
+
+                if (repaired == 0 || repairNum >= maxNumIterations)
+                    break;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // form result series
+        for (int i = 0; i < size; ++i) {
+            if (td_bool[i]) {
+                td_repair[i] = td_label[i];
+            } else {
+                td_repair[i] = td_dirty[i] + zs[i];
+            }
+        }
+    }
+
+    private static List<Integer> invokeAll(ExecutorService pool, List<Callable<Integer>> tasks) {
+        List<Integer> rtn = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Integer> future : pool.invokeAll(tasks))
+                rtn.add(future.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("IMR worker failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IMR interrupted", e);
+        }
+        return rtn;
+    }
+
+    /**
+     * rows [lo, hi), backed by zs[lo, hi + p) where zs[lo, lo + p) is the halo
+     */
+    private class Segment {
+        private final int lo, hi;
+        private final double[] z;
+        private final double[][] a, la; // partial sums over own rows, private copy of the global sums
+        private final double[] b, lb, phi, row;
+        private final IMRBackend backend = IMRBackend.create(p);
+        private long busyTime, scanNum;
+        private int repairNum;
+
+        Segment(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+            this.z = new double[hi - lo + p];
+            this.a = new double[p][p];
+            this.b = new double[p];
+            this.la = new double[p][p];
+            this.lb = new double[p];
+            this.phi = new double[p];
+            this.row = new double[p];
+        }
+
+        int sync(double[] zs) {
+            long startTime = System.nanoTime();
+            System.arraycopy(zs, lo, z, 0, z.length);
+            for (double[] row : a) Arrays.fill(row, 0);
+            Arrays.fill(b, 0);
+            for (int r = 0; r < hi - lo; ++r)
+                accumulate(a, b, r, 1);
+            busyTime += System.nanoTime() - startTime;
+            return 0;
+        }
+
+        int repair(double[] zs, double[][] ga, double[] gb, int quota) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < p; ++i)
+                System.arraycopy(ga[i], 0, la[i], 0, p);
+            System.arraycopy(gb, 0, lb, 0, p);
+
+            int repaired = 0;
+            for (; repaired < quota; ++repaired) {
+                backend.solve(la, lb, phi);
+                int index = repairAMin();
+                if (index == -1)
+                    break;
+
+                // rows whose y or x contain z[index + p]
+                int from = index, to = Math.min(hi - lo - 1, index + p);
+                for (int r = from; r <= to; ++r) accumulate(la, lb, r, -1);
+                z[index + p] = combine(index);
+                for (int r = from; r <= to; ++r) accumulate(la, lb, r, 1);
+            }
+
+            // write back own values, the halo is not ours
+            System.arraycopy(z, p, zs, lo + p, hi - lo);
+            repairNum += repaired;
+            busyTime += System.nanoTime() - startTime;
+            return repaired;
+        }
+
+        private double combine(int r) {
+            double yhat = 0;
+            for (int j = 0; j < p; ++j)
+                yhat += phi[j] * z[r + p - j - 1];
+            return yhat;
+        }
+
+        private int repairAMin() {
+            double aMin = Double.MAX_VALUE;
+            int targetIndex = -1;
+            for (int r = 0; r < hi - lo; ++r) {
+                if (td_bool[lo + r + p]) {
+                    continue;
+                }
+                double yhat = combine(r);
+                if (Math.abs(yhat - z[r + p]) < delta) {
+                    continue;
+                }
+                double yhatabs = Math.abs(yhat);
+                if (yhatabs < aMin) {
+                    aMin = yhatabs;
+                    targetIndex = r;
+                }
+            }
+            scanNum += hi - lo;
+            return targetIndex;
+        }
+
+        /**
+         * add (sign = 1) or remove (sign = -1) the contribution of row r to the sums
+         */
+        private void accumulate(double[][] sa, double[] sb, int r, int sign) {
+            double y = z[r + p];
+            for (int j = 0; j < p; ++j)
+                row[j] = z[r + p - j - 1];
+            for (int i = 0; i < p; ++i) {
+                double xi = sign * row[i];
+                for (int j = 0; j < p; ++j)
+                    sa[i][j] += xi * row[j];
+                sb[i] += xi * y;
+            }
+        }
+    }
+
+    public double[] getRepaired() {
+        return td_repair;
+    }
+
+    public int getEpochNum() {
+        return epochNum;
+    }
+
+    public int getRepairNum() {
+        return repairNum;
+    }
+
+    /**
+     * candidate rows scanned per second of busy time, one entry per worker
+     */
+    public double[] getWorkerThroughput() {
+        double[] rtn = new double[segments.length];
+        for (int w = 0; w < segments.length; ++w)
+            rtn[w] = segments[w].busyTime == 0 ? 0 : segments[w].scanNum * 1e9 / segments[w].busyTime;
+        return rtn;
+    }
+
+    /**
+     * points repaired by each worker
+     */
+    public int[] getWorkerRepairNum() {
+        int[] rtn = new int[segments.length];
+        for (int w = 0; w < segments.length; ++w)
+            rtn[w] = segments[w].repairNum;
+        return rtn;
+    }
+}
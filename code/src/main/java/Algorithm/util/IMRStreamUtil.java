@@ -0,0 +1,174 @@
+package Algorithm.util;
+
+/**
+ * Online IMR for live feeds.
+ * <p>
+ * The AR(p) coefficients are kept up to date by recursive least squares, so the state is
+ * O(p^2) plus a window of lag + p points, independent of the history length. A point is
+ * repaired as soon as it arrives and may still be revised while it stays in the window,
+ * e.g. when a label for it or for an earlier point is confirmed. Once it falls lag points
+ * behind the newest one it is final: it is emitted to the sink and fed to the RLS update.
+ */
+public class IMRStreamUtil {
+    public interface Sink {
+        void accept(long time, double value);
+    }
+
+    private final int p; // AR(p) model
+    private final double delta; // converge
+    private final double lambda; // forgetting factor of RLS
+    private final int lag; // max number of points kept revisable
+    private final Sink sink;
+
+    // RLS state
+    private final double[] phi, P, x, px;
+
+    // window, ring buffer over the last lag + p points
+    private final int cap;
+    private final long[] w_time;
+    private final double[] w_dirty;
+    private final double[] w_z; // label - dirty
+    private final boolean[] w_bool;
+    private long count, emitted;
+
+    public IMRStreamUtil(int p, double delta, double lambda, int lag, Sink sink) {
+        this.p = p;
+        this.delta = delta;
+        this.lambda = lambda;
+        this.lag = Math.max(lag, 0);
+        this.sink = sink;
+
+        this.phi = new double[p];
+        this.P = new double[p * p];
+        this.x = new double[p];
+        this.px = new double[p];
+        for (int i = 0; i < p; ++i)
+            P[i * p + i] = 1e4; // large initial covariance, i.e. no prior on phi
+
+        this.cap = this.lag + p + 1;
+        this.w_time = new long[cap];
+        this.w_dirty = new double[cap];
+        this.w_z = new double[cap];
+        this.w_bool = new boolean[cap];
+    }
+
+    private int pos(long i) {
+        return (int) (i % cap);
+    }
+
+    /**
+     * a new unlabeled point
+     */
+    public void append(long time, double dirty) {
+        int k = pos(count);
+        w_time[k] = time;
+        w_dirty[k] = dirty;
+        w_z[k] = 0;
+        w_bool[k] = false;
+        predict(count);
+        count++;
+
+        while (count - emitted > lag)
+            emit();
+    }
+
+    /**
+     * a new labeled point
+     */
+    public void append(long time, double dirty, double label) {
+        append(time, dirty);
+        label(time, label);
+    }
+
+    /**
+     * confirm the value of a point still in the window
+     *
+     * @return false if the point is unknown or already final
+     */
+    public boolean label(long time, double value) {
+        for (long i = count - 1; i >= emitted; --i) {
+            int k = pos(i);
+            if (w_time[k] == time) {
+                w_z[k] = value - w_dirty[k];
+                w_bool[k] = true;
+                // the following predictions depend on this value
+                for (long j = i + 1; j < count; ++j)
+                    predict(j);
+                return true;
+            }
+            if (w_time[k] < time)
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * emit every point left in the window
+     */
+    public void flush() {
+        while (emitted < count)
+            emit();
+    }
+
+    private boolean history(long i) {
+        if (i < p)
+            return false;
+        for (int j = 0; j < p; ++j)
+            x[j] = w_z[pos(i - j - 1)];
+        return true;
+    }
+
+    private void predict(long i) {
+        int k = pos(i);
+        if (w_bool[k] || !history(i))
+            return;
+        double yhat = 0;
+        for (int j = 0; j < p; ++j)
+            yhat += phi[j] * x[j];
+        // same rule as the batch version, the unrepaired z is 0
+        w_z[k] = Math.abs(yhat) < delta ? 0 : yhat;
+    }
+
+    private void emit() {
+        int k = pos(emitted);
+        if (history(emitted))
+            update(w_z[k]);
+        sink.accept(w_time[k], w_dirty[k] + w_z[k]);
+        emitted++;
+    }
+
+    /**
+     * RLS step with regressor x and response y
+     */
+    private void update(double y) {
+        double denom = lambda, err = y;
+        for (int i = 0; i < p; ++i) {
+            double v = 0;
+            for (int j = 0; j < p; ++j)
+                v += P[i * p + j] * x[j];
+            px[i] = v;
+            denom += x[i] * v;
+            err -= phi[i] * x[i];
+        }
+        if (denom <= 0 || Double.isNaN(denom))
+            return;
+        // P is symmetric, so x'P = (Px)'
+        for (int i = 0; i < p; ++i) {
+            phi[i] += px[i] / denom * err;
+            for (int j = 0; j < p; ++j)
+                P[i * p + j] = (P[i * p + j] - px[i] * px[j] / denom) / lambda;
+        }
+    }
+
+    public double[] getPhi() {
+        return phi;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getEmitted() {
+        return emitted;
+    }
+}
@@ -1,9 +1,7 @@
 package Algorithm.util;
 
-import Jama.Matrix;
-
 public class IMRUtil {
-    private final boolean[] td_bool; // whether the point is labeled
+    private final LabelMask mask; // whether the point is labeled
     private final long[] td_time;
     private final double[] td_dirty;
     private final double[] td_label;
@@ -11,66 +9,92 @@ public class IMRUtil {
     private final int p; // AR(p) model
     private final double delta; // converge
     private final int maxNumIterations; // max iteration number
+    private final IMRBackend backend;
+    private int iterationNum;
+    private Recorder recorder = Recorder.NOOP;
 
     public IMRUtil(long[] td_time, double[] td_dirty, double[] td_label,
                    boolean[] td_bool, int p, double delta, int maxNumIterations) {
-        this.td_bool = td_bool;
+        this(td_time, td_dirty, td_label, td_bool, p, delta, maxNumIterations, IMRBackend.create(p));
+    }
+
+    public IMRUtil(long[] td_time, double[] td_dirty, double[] td_label,
+                   boolean[] td_bool, int p, double delta, int maxNumIterations, IMRBackend backend) {
+        this(td_time, td_dirty, td_label, LabelMask.of(td_bool), p, delta, maxNumIterations, backend);
+    }
+
+    public IMRUtil(long[] td_time, double[] td_dirty, double[] td_label,
+                   LabelMask mask, int p, double delta, int maxNumIterations) {
+        this(td_time, td_dirty, td_label, mask, p, delta, maxNumIterations, IMRBackend.create(p));
+    }
+
+    public IMRUtil(long[] td_time, double[] td_dirty, double[] td_label,
+                   LabelMask mask, int p, double delta, int maxNumIterations, IMRBackend backend) {
+        this(td_time, td_dirty, new double[td_dirty.length], td_label, mask, p, delta, maxNumIterations, backend);
+    }
+
+    /**
+     * td_repair may be td_dirty, td_dirty is read only before the repair is written
+     */
+    public IMRUtil(long[] td_time, double[] td_dirty, double[] td_repair, double[] td_label,
+                   LabelMask mask, int p, double delta, int maxNumIterations, IMRBackend backend) {
+        this.mask = mask;
         this.td_time = td_time;
         this.td_dirty = td_dirty;
         this.td_label = td_label;
-        this.td_repair = new double[td_dirty.length];
+        this.td_repair = td_repair;
         this.p = p;
         this.delta = delta;
         this.maxNumIterations = maxNumIterations;
+        this.backend = backend;
     }
 
-    protected Matrix learnParamsIC(Matrix A, Matrix B) {
-        Matrix phi = new Matrix(p, 1);
-        phi = A.inverse().times(B);
-        return phi;
+    protected void learnParamsIC(double[][] A, double[] B, double[] phi) {
+        backend.solve(A, B, phi);
     }
 
     /**
-     * use phi to combine
+     * use phi to combine with the design matrix held by the backend
      *
-     * @param phi     phi
-     * @param xMatrix x
-     * @return yhat
+     * @param phi  phi
+     * @param yhat output
      */
-    protected Matrix combine(Matrix phi, Matrix xMatrix) {
-        return xMatrix.times(phi);
+    protected void combine(double[] phi, double[] yhat) {
+        backend.combine(phi, yhat);
     }
 
     /**
      * Absolute minimum
      *
-     * @param yhatMatrix yhat
-     * @param yMatrix    y
+     * @param yhat yhat
+     * @param y    y
      * @return the index of the minimum repair point
      */
-    protected int repairAMin(Matrix yhatMatrix, Matrix yMatrix) {
-        int rowNum = yhatMatrix.getRowDimension();
-        Matrix residualMatrix = yhatMatrix.minus(yMatrix);
+    protected int repairAMin(double[] yhat, double[] y) {
+        int rowNum = yhat.length;
 
         double aMin = Double.MAX_VALUE;
         int targetIndex = -1;
-        double yhat, yhatabs;
+        double yhatabs;
 
-        for (int i = 0; i < rowNum; ++i) {
-            if (td_bool[i + p]) {
-                continue;
-            }
-            if (Math.abs(residualMatrix.get(i, 0)) < delta) {
-                continue;
-            }
+        // the unlabeled rows lie between consecutive labels
+        for (int i = 0, label = mask.nextSetBit(p); i < rowNum; label = mask.nextSetBit(label + 1)) {
+            int end = label < 0 ? rowNum : label - p;
+            for (; i < end; ++i) {
+                if (Math.abs(yhat[i] - y[i]) < delta) {
+                    continue;
+                }
 
-            yhat = yhatMatrix.get(i, 0);
-            yhatabs = Math.abs(yhat);
+                yhatabs = Math.abs(yhat[i]);
 
-            if (yhatabs < aMin) { // no need to > 0
-                aMin = yhatabs;
-                targetIndex = i;
+                if (yhatabs < aMin) { // no need to > 0
+                    aMin = yhatabs;
+                    targetIndex = i;
+                }
             }
+            if (label < 0)
+                break;
+            i = label - p + 1;
         }
 
         return targetIndex;
@@ -80,11 +104,10 @@ public class IMRUtil {
     /**
      * initialize Matrix A and B
      */
-    private void initMatrix(Matrix A, Matrix B, double[] zs) {
+    private void initMatrix(double[][] a, double[] b, double[] zs) {
         int size = zs.length;
 
         // A:p*p, B:p*1
-        double[][] a = A.getArray(), b = B.getArray();
         double val;
         int realL; // since the index will be 1 smaller
 
@@ -119,21 +142,20 @@ public class IMRUtil {
                 realL = l - 1;
                 val += zs[realL] * zs[realL - i];
             }
-            b[i - 1][0] = val;
+            b[i - 1] = val;
         }
     }
 
     /**
      * following formulas (18-20)
      */
-    private void update(int index, double preVal, double val, Matrix A, Matrix B, double[] zs) {
+    private void update(int index, double preVal, double val, double[][] a, double[] b, double[] zs) {
         int size = zs.length; // denoting n+1 since starting with 0
         int n = size - 1;
         int zPos = index + p;
         zs[zPos] = val;
 
         // A:p*p, B:p*1
-        double[][] a = A.getArray(), b = B.getArray();
         double aiiVal = val * val - preVal * preVal;
         double aijVal = val - preVal;
         double addVal = 0;
@@ -175,38 +197,42 @@ public class IMRUtil {
             } else {
                 addVal = aijVal * (zs[zPos - i] + zs[zPos + i]);
             }
-            b[i - 1][0] += addVal;
+            b[i - 1] += addVal;
         }
     }
 
-    private void compute(double[][] x, double[][] y, double[] zs) {
+    private void compute(double[] x, double[] y, double[] zs) {
         int rowNum = y.length;
 
         // begin iteration
         int index = -1;
-        Matrix xMatrix = new Matrix(x);
-        Matrix yMatrix = new Matrix(y);
+        backend.setDesign(x, rowNum, p);
+        double[] yhat = new double[rowNum], phi = new double[p];
         int iterationNum = 0;
         double val = 0, preVal = 0;
 
-        Matrix aMatrix = new Matrix(p, p), bMatrix = new Matrix(p, 1);
-        initMatrix(aMatrix, bMatrix, zs);
+        double[][] a = new double[p][p];
+        double[] b = new double[p];
+        initMatrix(a, b, zs);
 
         while (true) {
             iterationNum++;
+            RepairEvents.Iteration event = RepairEvents.Iteration.start();
 
             // Matrix phi = learnParamsOLS(xMatrix, yMatrix);
-            Matrix phi = learnParamsIC(aMatrix, bMatrix);
-            Matrix yhatMatrix = combine(phi, xMatrix);
+            learnParamsIC(a, b, phi);
+            combine(phi, yhat);
 
-            index = repairAMin(yhatMatrix, yMatrix);
+            index = repairAMin(yhat, y);
             if (index == -1)
                 break;
 
-            preVal = yMatrix.get(index, 0);
-            val = yhatMatrix.get(index, 0);
+            preVal = y[index];
+            val = yhat[index];
             // update y
-            yMatrix.set(index, 0, val);
+            y[index] = val;
+            recorder.iteration(1);
+            event.commit("IMR", iterationNum, 1);
             // update x
             for (int j = 0; j < p; ++j) {
                 int i = index + 1 + j; // p+i-j-1 \Leftrightarrow p+i = index+p
@@ -215,24 +241,24 @@ public class IMRUtil {
                 if (i < 0)
                     continue;
 
-                xMatrix.set(i, j, val);
+                backend.set(i, j, val);
             }
 
             int zPos = index + p;
             zs[zPos] = val;
-            update(index, preVal, val, aMatrix, bMatrix, zs);
+            update(index, preVal, val, a, b, zs);
 
             if (iterationNum > maxNumIterations)
                 break;
         }
 
-        System.out.println("Stop after " + iterationNum + " iterations");
+        this.iterationNum = iterationNum;
     }
 
     /**
      * p = 1
      */
-    private void incrementalCompute1(double[][] x, double[][] y, double[] zs) {
+    private void incrementalCompute1(double[] x, double[] y, double[] zs) {
         int size = zs.length; // denoting n+1 since starting with 0
         int rowNum = size - p;
 
@@ -245,30 +271,32 @@ public class IMRUtil {
         }
         alpha += zs[0] * zs[0];
         beta += zs[size - 1] * zs[size - 2];
-        double[][] phiArray = new double[1][1];
+        double[] phi = new double[1];
 
         // begin iteration
         int index = -1;
-        Matrix xMatrix = new Matrix(x);
-        Matrix yMatrix = new Matrix(y);
+        backend.setDesign(x, rowNum, p);
+        double[] yhat = new double[rowNum];
         int iterationNum = 0;
         double val = 0, preVal = 0;
 
         while (true) {
             iterationNum++;
-            phiArray[0][0] = beta / alpha;
-            Matrix phi = new Matrix(phiArray);
+            RepairEvents.Iteration event = RepairEvents.Iteration.start();
+            phi[0] = beta / alpha;
             // Matrix phi = learnParamsOLS(xMatrix, yMatrix);
-            Matrix yhatMatrix = combine(phi, xMatrix);
+            combine(phi, yhat);
 
-            index = repairAMin(yhatMatrix, yMatrix);
+            index = repairAMin(yhat, y);
             if (index == -1)
                 break;
 
-            preVal = yMatrix.get(index, 0);
-            val = yhatMatrix.get(index, 0);
+            preVal = y[index];
+            val = yhat[index];
             // update y
-            yMatrix.set(index, 0, val);
+            y[index] = val;
+            recorder.iteration(1);
+            event.commit("IMR", iterationNum, 1);
             // update x
             for (int j = 0; j < p; ++j) {
                 int i = index + 1 + j; // p+i-j-1 \Leftrightarrow p+i = index+p
@@ -277,7 +305,7 @@ public class IMRUtil {
                 if (i < 0)
                     continue;
 
-                xMatrix.set(i, j, val);
+                backend.set(i, j, val);
             }
 
             // update alpha
@@ -295,13 +323,13 @@ public class IMRUtil {
                 break;
         }
 
-        System.out.println("Stop after " + iterationNum + " iterations");
+        this.iterationNum = iterationNum;
     }
 
     /**
      * p = 2
      */
-    private void incrementalCompute2(double[][] x, double[][] y, double[] zs) {
+    private void incrementalCompute2(double[] x, double[] y, double[] zs) {
         int size = zs.length; // denoting n+1 since starting with 0
         int rowNum = size - p;
 
@@ -324,31 +352,33 @@ public class IMRUtil {
 
         double alphachange = 0;
 
-        double[][] phiArray = new double[2][1];
+        double[] phi = new double[2];
 
         // begin iteration
         int index = -1;
-        Matrix xMatrix = new Matrix(x);
-        Matrix yMatrix = new Matrix(y);
+        backend.setDesign(x, rowNum, p);
+        double[] yhat = new double[rowNum];
         int iterationNum = 0;
         double val = 0, preVal = 0;
 
         while (true) {
             iterationNum++;
-            phiArray[0][0] = (beta3 * alpha2 - gamma3 * beta2) / det;
-            phiArray[1][0] = (-beta3 * beta2 + gamma3 * alpha1) / det;
-            Matrix phi = new Matrix(phiArray);
+            RepairEvents.Iteration event = RepairEvents.Iteration.start();
+            phi[0] = (beta3 * alpha2 - gamma3 * beta2) / det;
+            phi[1] = (-beta3 * beta2 + gamma3 * alpha1) / det;
             // Matrix phi = learnParamsOLS(xMatrix, yMatrix);
-            Matrix yhatMatrix = combine(phi, xMatrix);
+            combine(phi, yhat);
 
-            index = repairAMin(yhatMatrix, yMatrix);
+            index = repairAMin(yhat, y);
             if (index == -1)
                 break;
 
-            preVal = yMatrix.get(index, 0);
-            val = yhatMatrix.get(index, 0);
+            preVal = y[index];
+            val = yhat[index];
             // update y
-            yMatrix.set(index, 0, val);
+            y[index] = val;
+            recorder.iteration(1);
+            event.commit("IMR", iterationNum, 1);
             // update x
             for (int j = 0; j < p; ++j) {
                 int i = index + 1 + j; // p+i-j-1 \Leftrightarrow p+i = index+p
@@ -357,7 +387,7 @@ public class IMRUtil {
                 if (i < 0)
                     continue;
 
-                xMatrix.set(i, j, val);
+                backend.set(i, j, val);
             }
 
             // update alpha
@@ -393,13 +423,13 @@ public class IMRUtil {
                 break;
         }
 
-        System.out.println("Stop after " + iterationNum + " iterations");
+        this.iterationNum = iterationNum;
     }
 
     /**
      * p = 3
      */
-    private void incrementalCompute3(double[][] x, double[][] y, double[] zs) {
+    private void incrementalCompute3(double[] x, double[] y, double[] zs) {
         int size = zs.length; // denoting n+1 since starting with 0
         int rowNum = size - p;
 
@@ -445,32 +475,34 @@ public class IMRUtil {
 
         double alphachange = 0;
 
-        double[][] phiArray = new double[3][1];
+        double[] phi = new double[3];
 
         // begin iteration
         int index = -1;
-        Matrix xMatrix = new Matrix(x);
-        Matrix yMatrix = new Matrix(y);
+        backend.setDesign(x, rowNum, p);
+        double[] yhat = new double[rowNum];
         int iterationNum = 0;
         double val = 0, preVal = 0;
 
         while (true) {
             iterationNum++;
-            phiArray[0][0] = (beta4 * A + gamma4 * D + zeta4 * G) / det;
-            phiArray[1][0] = (beta4 * B + gamma4 * E + zeta4 * H) / det;
-            phiArray[2][0] = (beta4 * C + gamma4 * F + zeta4 * I) / det;
-            Matrix phi = new Matrix(phiArray);
+            RepairEvents.Iteration event = RepairEvents.Iteration.start();
+            phi[0] = (beta4 * A + gamma4 * D + zeta4 * G) / det;
+            phi[1] = (beta4 * B + gamma4 * E + zeta4 * H) / det;
+            phi[2] = (beta4 * C + gamma4 * F + zeta4 * I) / det;
             // Matrix phi = learnParamsOLS(xMatrix, yMatrix);
-            Matrix yhatMatrix = combine(phi, xMatrix);
+            combine(phi, yhat);
 
-            index = repairAMin(yhatMatrix, yMatrix);
+            index = repairAMin(yhat, y);
             if (index == -1)
                 break;
 
-            preVal = yMatrix.get(index, 0);
-            val = yhatMatrix.get(index, 0);
+            preVal = y[index];
+            val = yhat[index];
             // update y
-            yMatrix.set(index, 0, val);
+            y[index] = val;
+            recorder.iteration(1);
+            event.commit("IMR", iterationNum, 1);
             // update x
             for (int j = 0; j < p; ++j) {
                 int i = index + 1 + j; // p+i-j-1 \Leftrightarrow p+i = index+p
@@ -479,7 +511,7 @@ public class IMRUtil {
                 if (i < 0)
                     continue;
 
-                xMatrix.set(i, j, val);
+                backend.set(i, j, val);
             }
 
             // update alpha
@@ -537,13 +569,15 @@ public class IMRUtil {
                 break;
         }
 
-        System.out.println("Stop after " + iterationNum + " iterations");
+        this.iterationNum = iterationNum;
     }
 
     public void repair() {
+        recorder = Recorder.current();
         int size = td_dirty.length;
         int rowNum = size - p;
 
+        recorder.begin("imr.setup");
         // form z
         double[] zs = new double[size];
         for (int i = 0; i < size; ++i) {
@@ -551,33 +585,43 @@ public class IMRUtil {
         }
 
         // build x,y for params estimation
-        double[][] x = new double[rowNum][p];
-        double[][] y = new double[rowNum][1];
+        double[] x = new double[rowNum * p]; // row-major
+        double[] y = new double[rowNum];
         for (int i = 0; i < rowNum; ++i) {
-            y[i][0] = zs[p + i];
+            y[i] = zs[p + i];
             for (int j = 0; j < p; ++j) {
-                x[i][j] = zs[p + i - j - 1];
+                x[i * p + j] = zs[p + i - j - 1];
             }
         }
+        recorder.end();
 
+        recorder.begin("imr.iterate");
         switch (p) {
             case 1 -> incrementalCompute1(x, y, zs);
             case 2 -> incrementalCompute2(x, y, zs);
             case 3 -> incrementalCompute3(x, y, zs);
             default -> compute(x, y, zs);
         }
+        recorder.end();
 
         // form result series
-        for (int i = 0; i < size; ++i) {
-            if (td_bool[i]) {
-                td_repair[i] = td_label[i];
-            } else {
-                td_repair[i] = td_dirty[i] + y[i - p][0];
+        for (int i = 0, label = mask.nextSetBit(0); i < size; label = mask.nextSetBit(label + 1)) {
+            int end = label < 0 ? size : label;
+            for (; i < end; ++i) {
+                td_repair[i] = td_dirty[i] + y[i - p];
             }
+            if (label < 0)
+                break;
+            td_repair[label] = td_label[label];
+            i = label + 1;
         }
     }
 
     public double[] getRepaired() {
         return td_repair;
     }
+
+    public int getIterationNum() {
+        return iterationNum;
+    }
 }
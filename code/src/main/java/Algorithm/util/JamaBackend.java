@@ -0,0 +1,37 @@
+package Algorithm.util;
+
+import Jama.Matrix;
+
+/**
+ * Reference backend, every operation allocates new Jama matrices.
+ */
+public class JamaBackend implements IMRBackend {
+    private Matrix xMatrix;
+
+    @Override
+    public void setDesign(double[] x, int rowNum, int p) {
+        xMatrix = new Matrix(rowNum, p);
+        for (int i = 0; i < rowNum; ++i)
+            for (int j = 0; j < p; ++j)
+                xMatrix.set(i, j, x[i * p + j]);
+    }
+
+    @Override
+    public void set(int row, int col, double val) {
+        xMatrix.set(row, col, val);
+    }
+
+    @Override
+    public void solve(double[][] a, double[] b, double[] phi) {
+        Matrix phiMatrix = new Matrix(a).inverse().times(new Matrix(b, b.length));
+        for (int i = 0; i < phi.length; ++i)
+            phi[i] = phiMatrix.get(i, 0);
+    }
+
+    @Override
+    public void combine(double[] phi, double[] yhat) {
+        Matrix yhatMatrix = xMatrix.times(new Matrix(phi, phi.length));
+        for (int i = 0; i < yhat.length; ++i)
+            yhat[i] = yhatMatrix.get(i, 0);
+    }
+}
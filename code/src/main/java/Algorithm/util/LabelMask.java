@@ -0,0 +1,201 @@
+package Algorithm.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Immutable set of labeled points over [0, size). Stored as a bitset of long words, or, when
+ * fewer than 1 in 32 points are labeled, as the sorted array of labeled indices.
+ */
+public class LabelMask {
+    private final int size;
+    private final int cardinality;
+    private final long[] words; // dense
+    private final int[] indices; // sparse
+
+    private LabelMask(int size, int cardinality, long[] words, int[] indices) {
+        this.size = size;
+        this.cardinality = cardinality;
+        this.words = words;
+        this.indices = indices;
+    }
+
+    /**
+     * from distinct indices in ascending order
+     */
+    public static LabelMask of(int size, int[] sorted) {
+        if (isSparse(size, sorted.length))
+            return new LabelMask(size, sorted.length, null, sorted);
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i : sorted)
+            words[i >>> 6] |= 1L << i;
+        return new LabelMask(size, sorted.length, words, null);
+    }
+
+    public static LabelMask of(boolean[] td_bool) {
+        int size = td_bool.length, cardinality = 0;
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; ++i) {
+            if (td_bool[i]) {
+                words[i >>> 6] |= 1L << i;
+                cardinality++;
+            }
+        }
+        return fromWords(size, cardinality, words);
+    }
+
+    /**
+     * m distinct points drawn uniformly by Floyd's algorithm, in O(m), plus the points 0, 1 and 2
+     */
+    public static LabelMask sample(int size, int m, long seed) {
+        Random random = new Random(seed);
+        m = Math.min(m, size);
+        if (!isSparse(size, m + 3)) {
+            long[] words = new long[(size + 63) >>> 6];
+            for (int j = size - m; j < size; ++j) {
+                int t = random.nextInt(j + 1);
+                int pick = (words[t >>> 6] & (1L << t)) != 0 ? j : t;
+                words[pick >>> 6] |= 1L << pick;
+            }
+            for (int i = 0; i < Math.min(3, size); ++i)
+                words[i >>> 6] |= 1L << i;
+            int cardinality = 0;
+            for (long word : words)
+                cardinality += Long.bitCount(word);
+            return fromWords(size, cardinality, words);
+        }
+
+        // open addressing set of ints, -1 is empty
+        int[] table = new int[Integer.highestOneBit(Math.max(4, m + 3)) << 2];
+        Arrays.fill(table, -1);
+        int[] picked = new int[m + 3];
+        int count = 0;
+        for (int j = size - m; j < size; ++j) {
+            int t = random.nextInt(j + 1);
+            int pick = contains(table, t) ? j : t;
+            add(table, pick);
+            picked[count++] = pick;
+        }
+        for (int i = 0; i < Math.min(3, size); ++i)
+            if (add(table, i))
+                picked[count++] = i;
+        int[] sorted = Arrays.copyOf(picked, count);
+        Arrays.sort(sorted);
+        return new LabelMask(size, count, null, sorted);
+    }
+
+    private static boolean isSparse(int size, int cardinality) {
+        return (long) cardinality * 32 < size;
+    }
+
+    private static LabelMask fromWords(int size, int cardinality, long[] words) {
+        if (!isSparse(size, cardinality))
+            return new LabelMask(size, cardinality, words, null);
+        int[] sorted = new int[cardinality];
+        for (int i = nextSetBit(words, 0), k = 0; i >= 0; i = nextSetBit(words, i + 1))
+            sorted[k++] = i;
+        return new LabelMask(size, cardinality, null, sorted);
+    }
+
+    private static int slot(int[] table, int v) {
+        int mask = table.length - 1, h = (v * 0x9E3779B9) & mask;
+        while (table[h] != -1 && table[h] != v)
+            h = (h + 1) & mask;
+        return h;
+    }
+
+    private static boolean contains(int[] table, int v) {
+        return table[slot(table, v)] == v;
+    }
+
+    private static boolean add(int[] table, int v) {
+        int h = slot(table, v);
+        if (table[h] == v)
+            return false;
+        table[h] = v;
+        return true;
+    }
+
+    public boolean get(int i) {
+        if (words != null)
+            return (words[i >>> 6] & (1L << i)) != 0;
+        return Arrays.binarySearch(indices, i) >= 0;
+    }
+
+    /**
+     * the first labeled point at or after from, -1 if none
+     */
+    public int nextSetBit(int from) {
+        if (from >= size)
+            return -1;
+        if (words != null)
+            return nextSetBit(words, from);
+        int k = Arrays.binarySearch(indices, from);
+        if (k < 0)
+            k = -k - 1;
+        return k < indices.length ? indices[k] : -1;
+    }
+
+    /**
+     * the first unlabeled point at or after from, size if none
+     */
+    public int nextClearBit(int from) {
+        if (from >= size)
+            return size;
+        if (words != null) {
+            int u = from >>> 6;
+            long word = ~words[u] & (-1L << from);
+            while (word == 0) {
+                if (++u == words.length)
+                    return size;
+                word = ~words[u];
+            }
+            return Math.min(size, (u << 6) + Long.numberOfTrailingZeros(word));
+        }
+        int k = Arrays.binarySearch(indices, from);
+        if (k < 0)
+            return from;
+        while (k + 1 < indices.length && indices[k + 1] == indices[k] + 1)
+            k++;
+        return Math.min(size, indices[k] + 1);
+    }
+
+    private static int nextSetBit(long[] words, int from) {
+        int u = from >>> 6;
+        if (u >= words.length)
+            return -1;
+        long word = words[u] & (-1L << from);
+        while (word == 0) {
+            if (++u == words.length)
+                return -1;
+            word = words[u];
+        }
+        return (u << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isSparse() {
+        return indices != null;
+    }
+
+    /**
+     * bytes held by the words or indices
+     */
+    public long memoryBytes() {
+        return words != null ? 8L * words.length : 4L * indices.length;
+    }
+
+    public boolean[] toBool() {
+        boolean[] td_bool = new boolean[size];
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+            td_bool[i] = true;
+        return td_bool;
+    }
+}
@@ -9,20 +9,38 @@ public class LsgreedyUtil {
     private int n;
     private final long[] time;
     private final double[] original;
-    private double[] repaired;
+    private final double[] repaired;
+    private int stepNum;
 
     public LsgreedyUtil(long[] time, double[] original) throws Exception {
+        this(time, original, new double[original.length]);
+    }
+
+    /**
+     * repaired may be original
+     */
+    public LsgreedyUtil(long[] time, double[] original, double[] repaired) throws Exception {
         this.time = time;
         this.original = original;
         this.n = original.length;
-        this.repaired = new double[n];
+        this.repaired = repaired;
+        Recorder recorder = Recorder.current();
+        recorder.begin("lsgreedy.parameters");
         setParameters();
+        recorder.end();
     }
 
     public double[] getRepaired() {
         return repaired;
     }
 
+    /**
+     * points modified by the greedy loop
+     */
+    public int getStepNum() {
+        return stepNum;
+    }
+
     public static double[] speed(double[] origin, long[] time) {
         int n = origin.length;
         double[] speed = new double[n - 1];
@@ -67,7 +85,9 @@ public class LsgreedyUtil {
     }
 
     public void repair() {
-        repaired = original.clone();
+        Recorder recorder = Recorder.current();
+        recorder.begin("lsgreedy.heap");
+        System.arraycopy(original, 0, repaired, 0, n);
         RepairNode[] table = new RepairNode[n];
         PriorityQueue<RepairNode> heap = new PriorityQueue<>();
         for (int i = 1; i < n - 1; i++) {
@@ -77,12 +97,18 @@ public class LsgreedyUtil {
                 heap.add(node);
             }
         }
-        while (true) {
+        recorder.count("lsgreedy.heap.initial", heap.size());
+        recorder.end();
+
+        recorder.begin("lsgreedy.greedy");
+        for (int step = 1; ; ++step) {
             RepairNode top = heap.peek();
             if (top == null || Math.abs(top.getU() - center) < Math.max(eps, 3 * sigma)) {
+                stepNum = step - 1;
                 break;
             } // stop greedy algorithm when the heap is empty or all speed changes locate in center±3sigma
             top.modify();
+            recorder.iteration(1);
             for (int i = Math.max(1, top.getIndex() - 1); i <= Math.min(n - 2, top.getIndex() + 1); i++) {
                 heap.remove(table[i]);
                 RepairNode temp = new RepairNode(i);
@@ -91,7 +117,9 @@ public class LsgreedyUtil {
                     heap.add(temp);
                 }
             }
+            RepairEvents.LsgreedyHeap.emit(step, heap.size());
         }
+        recorder.end();
     }
 
     class RepairNode implements Comparable<RepairNode> {
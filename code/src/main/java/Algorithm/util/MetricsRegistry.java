@@ -0,0 +1,107 @@
+package Algorithm.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, histograms and gauges, written in the Prometheus text format. Registering
+ * takes a lock and returns the existing metric for a name and labels already seen, so callers
+ * register once and keep the handle; recording on a handle is lock-free.
+ * <p>
+ * labels are name, value pairs: counter("points_total", "help", "algorithm", "SRD").
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    private static class Family {
+        final String type, help;
+        final Map<String, Object> metrics = new LinkedHashMap<>(); // labels -> metric
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, "counter", help, labels, Counter::new);
+    }
+
+    /**
+     * nanoseconds, exported in seconds from about 1us to 68s
+     */
+    public Histogram latency(String name, String help, String... labels) {
+        return (Histogram) register(name, "histogram", help, labels, () -> new Histogram(1e-9, 10, 36));
+    }
+
+    /**
+     * counts such as iterations, exported from 1 to 2^20
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, "histogram", help, labels, () -> new Histogram(1, 0, 20));
+    }
+
+    /**
+     * read at every scrape, a later registration of the same name and labels replaces it
+     */
+    public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, "gauge", help).metrics.put(labels(labels), value);
+    }
+
+    private synchronized Object register(String name, String type, String help, String[] labels, Supplier<Object> create) {
+        return family(name, type, help).metrics.computeIfAbsent(labels(labels), key -> create.get());
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException(name + " is a " + family.type);
+        return family;
+    }
+
+    /**
+     * a="x",b="y", with a trailing comma, empty without labels
+     */
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels come in name, value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2)
+            sb.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\",");
+        return sb.toString();
+    }
+
+    static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+    }
+
+    public synchronized String scrape() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> e : families.entrySet()) {
+            String name = e.getKey();
+            Family family = e.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> m : family.metrics.entrySet()) {
+                Object metric = m.getValue();
+                if (metric instanceof Histogram histogram)
+                    histogram.write(sb, name, m.getKey());
+                else if (metric instanceof Counter counter)
+                    sb.append(name).append(braces(m.getKey())).append(' ').append(counter.get()).append('\n');
+                else
+                    sb.append(name).append(braces(m.getKey())).append(' ')
+                            .append(((DoubleSupplier) metric).getAsDouble()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
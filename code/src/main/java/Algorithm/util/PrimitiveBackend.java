@@ -0,0 +1,75 @@
+package Algorithm.util;
+
+/**
+ * Plain loops over primitive arrays, best for small p.
+ */
+public class PrimitiveBackend implements IMRBackend {
+    private double[] x;
+    private int p;
+    private double[][] lu; // workspace of the elimination
+
+    @Override
+    public void setDesign(double[] x, int rowNum, int p) {
+        this.x = x;
+        this.p = p;
+    }
+
+    @Override
+    public void set(int row, int col, double val) {
+        x[row * p + col] = val;
+    }
+
+    @Override
+    public void solve(double[][] a, double[] b, double[] phi) {
+        int n = b.length;
+        if (lu == null || lu.length != n)
+            lu = new double[n][n + 1];
+        for (int i = 0; i < n; ++i) {
+            System.arraycopy(a[i], 0, lu[i], 0, n);
+            lu[i][n] = b[i];
+        }
+
+        // gaussian elimination with partial pivoting
+        for (int c = 0; c < n; ++c) {
+            int pivot = c;
+            for (int r = c + 1; r < n; ++r)
+                if (Math.abs(lu[r][c]) > Math.abs(lu[pivot][c]))
+                    pivot = r;
+            if (lu[pivot][c] == 0)
+                throw new RuntimeException("Matrix is singular.");
+            double[] tmp = lu[c];
+            lu[c] = lu[pivot];
+            lu[pivot] = tmp;
+
+            for (int r = c + 1; r < n; ++r) {
+                double f = lu[r][c] / lu[c][c];
+                if (f == 0)
+                    continue;
+                for (int k = c; k <= n; ++k)
+                    lu[r][k] -= f * lu[c][k];
+            }
+        }
+        for (int r = n - 1; r >= 0; --r) {
+            double val = lu[r][n];
+            for (int k = r + 1; k < n; ++k)
+                val -= lu[r][k] * phi[k];
+            phi[r] = val / lu[r][r];
+        }
+    }
+
+    @Override
+    public void combine(double[] phi, double[] yhat) {
+        if (p == 1) {
+            double phi0 = phi[0];
+            for (int i = 0; i < yhat.length; ++i)
+                yhat[i] = x[i] * phi0;
+            return;
+        }
+        for (int i = 0, base = 0; i < yhat.length; ++i, base += p) {
+            double val = 0;
+            for (int j = 0; j < p; ++j)
+                val += x[base + j] * phi[j];
+            yhat[i] = val;
+        }
+    }
+}
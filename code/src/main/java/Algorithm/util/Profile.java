@@ -0,0 +1,179 @@
+package Algorithm.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A recorder that keeps nanoTime and allocated bytes per phase, the points repaired per iteration
+ * and named counters, for the thread that started it:
+ * <pre>
+ * try (Profile profile = Profile.start()) {
+ *     new SRD(td_time, td_dirty, period, k, max_iter);
+ *     profile.getNanos("srd.generate");
+ * }
+ * </pre>
+ * A phase entered several times is summed. Time and bytes of a nested phase are also part of the
+ * enclosing one. Allocated bytes are -1 when the JVM cannot measure them.
+ */
+public class Profile extends Recorder implements AutoCloseable {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final Recorder previous;
+    private final Thread owner;
+    // name -> {nanos, bytes, calls}
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final Map<String, long[]> counts = new LinkedHashMap<>();
+
+    // open phases, innermost last
+    private String[] openNames = new String[8];
+    private long[] openNanos = new long[8], openBytes = new long[8];
+    private int depth;
+
+    private long[] repaired = new long[16];
+    private int iterations;
+
+    private Profile() {
+        this.owner = Thread.currentThread();
+        this.previous = CURRENT.get();
+    }
+
+    /**
+     * records the calling thread until close()
+     */
+    public static Profile start() {
+        Profile profile = new Profile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!threads.isThreadAllocatedMemorySupported())
+                return null;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        } catch (ClassCastException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * bytes allocated by the calling thread so far, -1 when the JVM cannot tell
+     */
+    public static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void begin(String phase) {
+        if (depth == openNames.length) {
+            openNames = Arrays.copyOf(openNames, depth * 2);
+            openNanos = Arrays.copyOf(openNanos, depth * 2);
+            openBytes = Arrays.copyOf(openBytes, depth * 2);
+        }
+        openNames[depth] = phase;
+        openBytes[depth] = allocatedBytes();
+        openNanos[depth++] = System.nanoTime();
+    }
+
+    @Override
+    public void end() {
+        long nanos = System.nanoTime(), bytes = allocatedBytes();
+        if (depth == 0)
+            throw new IllegalStateException("No open phase");
+        --depth;
+        long[] phase = phases.computeIfAbsent(openNames[depth], name -> new long[3]);
+        phase[0] += nanos - openNanos[depth];
+        phase[1] = bytes < 0 || phase[1] < 0 ? -1 : phase[1] + bytes - openBytes[depth];
+        phase[2]++;
+    }
+
+    @Override
+    public void iteration(long repaired) {
+        if (iterations == this.repaired.length)
+            this.repaired = Arrays.copyOf(this.repaired, iterations * 2);
+        this.repaired[iterations++] = repaired;
+    }
+
+    @Override
+    public void count(String name, long n) {
+        counts.computeIfAbsent(name, key -> new long[1])[0] += n;
+    }
+
+    /**
+     * closes the phases left open by an exception and restores the previous recorder
+     */
+    @Override
+    public void close() {
+        while (depth > 0)
+            end();
+        if (Thread.currentThread() == owner && CURRENT.get() == this)
+            CURRENT.set(previous);
+    }
+
+    /**
+     * in the order they were first closed
+     */
+    public Set<String> getPhases() {
+        return phases.keySet();
+    }
+
+    public long getNanos(String phase) {
+        long[] p = phases.get(phase);
+        return p == null ? 0 : p[0];
+    }
+
+    public long getAllocatedBytes(String phase) {
+        long[] p = phases.get(phase);
+        return p == null ? 0 : p[1];
+    }
+
+    public long getCalls(String phase) {
+        long[] p = phases.get(phase);
+        return p == null ? 0 : p[2];
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * points repaired by each iteration
+     */
+    public long[] getRepaired() {
+        return Arrays.copyOf(repaired, iterations);
+    }
+
+    public Set<String> getCounters() {
+        return counts.keySet();
+    }
+
+    public long getCount(String name) {
+        long[] c = counts.get(name);
+        return c == null ? 0 : c[0];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : phases.entrySet())
+            sb.append(String.format("%-24s %10.3fms %12dB %8d calls%n",
+                    e.getKey(), e.getValue()[0] / 1e6, e.getValue()[1], e.getValue()[2]));
+        for (Map.Entry<String, long[]> e : counts.entrySet())
+            sb.append(String.format("%-24s %10d%n", e.getKey(), e.getValue()[0]));
+        long total = 0;
+        for (int i = 0; i < iterations; ++i)
+            total += repaired[i];
+        sb.append(String.format("%d iterations, %d points repaired%n", iterations, total));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package Algorithm.util;
+
+/**
+ * Where the repair algorithms report their phases, iterations and counters. Every thread has a
+ * recorder, by default one that does nothing, so an algorithm fetches current() once per run and
+ * calls it unconditionally. Profile.start() installs a recording one on the calling thread.
+ * <p>
+ * Phases nest: end() closes the innermost open phase.
+ */
+public class Recorder {
+    static final Recorder NOOP = new Recorder();
+    static final ThreadLocal<Recorder> CURRENT = ThreadLocal.withInitial(() -> NOOP);
+
+    Recorder() {
+    }
+
+    public static Recorder current() {
+        return CURRENT.get();
+    }
+
+    public boolean isEnabled() {
+        return false;
+    }
+
+    public void begin(String phase) {
+    }
+
+    public void end() {
+    }
+
+    /**
+     * one iteration of the outer loop, which repaired the given number of points
+     */
+    public void iteration(long repaired) {
+    }
+
+    public void count(String name, long n) {
+    }
+}
@@ -0,0 +1,128 @@
+package Algorithm.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events of the repair algorithms, recorded with e.g.
+ * java -XX:StartFlightRecording:filename=repair.jfr ... and read with jfr print --events seasonal.*
+ * <p>
+ * While no recording is running, begin() and shouldCommit() are the only cost and the event
+ * objects do not escape, so the JIT removes their allocation.
+ */
+public final class RepairEvents {
+    private RepairEvents() {
+    }
+
+    @Name("seasonal.Repair")
+    @Label("Series Repair")
+    @Description("One series repaired by one algorithm")
+    @Category({"Seasonal", "Repair"})
+    @StackTrace(false)
+    public static class Repair extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Size")
+        int size;
+        @Label("Iterations")
+        @Description("SRD and IMR iterations, parallel IMR epochs, Lsgreedy steps, 0 for a single pass")
+        int iterations;
+        @Label("Repaired Points")
+        int repaired;
+
+        public static Repair start(String algorithm, int size) {
+            Repair event = new Repair();
+            event.algorithm = algorithm;
+            event.size = size;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * the repaired points are counted only while recording
+         */
+        public void commit(int iterations, double[] td_dirty, double[] td_repair) {
+            if (!shouldCommit())
+                return;
+            this.iterations = iterations;
+            for (int i = 0; i < td_repair.length; ++i)
+                if (Double.doubleToLongBits(td_repair[i]) != Double.doubleToLongBits(td_dirty[i]))
+                    repaired++;
+            commit();
+        }
+    }
+
+    @Name("seasonal.Decompose")
+    @Label("Decompose")
+    @Description("Trend, seasonal and residual of a series")
+    @Category({"Seasonal", "Repair"})
+    @StackTrace(false)
+    public static class Decompose extends Event {
+        @Label("Size")
+        int size;
+        @Label("Period")
+        int period;
+
+        public static Decompose start(int size, int period) {
+            Decompose event = new Decompose();
+            event.size = size;
+            event.period = period;
+            event.begin();
+            return event;
+        }
+    }
+
+    @Name("seasonal.Iteration")
+    @Label("Repair Iteration")
+    @Description("One iteration of SRD or IMR, an epoch of the parallel IMR")
+    @Category({"Seasonal", "Repair"})
+    @StackTrace(false)
+    public static class Iteration extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Iteration")
+        int iteration;
+        @Label("Repaired Points")
+        long repaired;
+
+        public static Iteration start() {
+            Iteration event = new Iteration();
+            event.begin();
+            return event;
+        }
+
+        public void commit(String algorithm, int iteration, long repaired) {
+            if (!shouldCommit())
+                return;
+            this.algorithm = algorithm;
+            this.iteration = iteration;
+            this.repaired = repaired;
+            commit();
+        }
+    }
+
+    @Name("seasonal.LsgreedyHeap")
+    @Label("Lsgreedy Heap")
+    @Description("Candidates left in the Lsgreedy heap after a greedy step")
+    @Category({"Seasonal", "Repair"})
+    @StackTrace(false)
+    public static class LsgreedyHeap extends Event {
+        @Label("Step")
+        int step;
+        @Label("Heap Size")
+        int heapSize;
+
+        public static void emit(int step, int heapSize) {
+            LsgreedyHeap event = new LsgreedyHeap();
+            if (!event.shouldCommit())
+                return;
+            event.step = step;
+            event.heapSize = heapSize;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package Algorithm.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one repair algorithm in the global registry: points ingested and repaired,
+ * iterations and latency per series, and the series in flight.
+ */
+public class RepairMetrics {
+    private static final ConcurrentHashMap<String, RepairMetrics> ALGORITHMS = new ConcurrentHashMap<>();
+
+    private final Counter series, ingested, repaired;
+    private final Histogram iterations, latency;
+    private final LongAdder inFlight = new LongAdder();
+
+    private RepairMetrics(String algorithm) {
+        MetricsRegistry registry = MetricsRegistry.global();
+        series = registry.counter("seasonal_series_total", "Series repaired", "algorithm", algorithm);
+        ingested = registry.counter("seasonal_points_ingested_total", "Points given to the repair", "algorithm", algorithm);
+        repaired = registry.counter("seasonal_points_repaired_total", "Points changed by the repair", "algorithm", algorithm);
+        iterations = registry.histogram("seasonal_repair_iterations", "Iterations per series", "algorithm", algorithm);
+        latency = registry.latency("seasonal_repair_seconds", "Repair latency per series", "algorithm", algorithm);
+        registry.gauge("seasonal_repairs_in_flight", "Series being repaired", inFlight::sum, "algorithm", algorithm);
+    }
+
+    public static RepairMetrics of(String algorithm) {
+        return ALGORITHMS.computeIfAbsent(algorithm, RepairMetrics::new);
+    }
+
+    /**
+     * call before the repair, every start() is followed by one end() in a finally
+     */
+    public void start() {
+        inFlight.increment();
+    }
+
+    /**
+     * the repair left, also when it threw
+     */
+    public void end() {
+        inFlight.decrement();
+    }
+
+    /**
+     * a repair that completed, before its end()
+     */
+    public void record(double[] td_dirty, double[] td_repair, int iterationNum, long nanos) {
+        int changed = 0;
+        for (int i = 0; i < td_repair.length; ++i)
+            if (Double.doubleToLongBits(td_repair[i]) != Double.doubleToLongBits(td_dirty[i]))
+                changed++;
+        series.inc();
+        ingested.add(td_dirty.length);
+        repaired.add(changed);
+        iterations.record(iterationNum);
+        latency.record(nanos);
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+}
@@ -1,8 +1,5 @@
 package Algorithm.util;
 
-import javafx.util.Pair;
-
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class ScreenUtil {
@@ -12,13 +9,25 @@ public class ScreenUtil {
     private final long[] time;
     private final double[] original;
     private final double[] repaired;
+    private double[] window = new double[64]; // the candidates of getMedian
+    private int changed;
 
     public ScreenUtil(long[] time, double[] original) throws Exception {
+        this(time, original, new double[original.length]);
+    }
+
+    /**
+     * repaired may be original
+     */
+    public ScreenUtil(long[] time, double[] original, double[] repaired) throws Exception {
         this.time = time;
         this.original = original;
         this.n = original.length;
-        this.repaired = new double[n];
+        this.repaired = repaired;
+        Recorder recorder = Recorder.current();
+        recorder.begin("screen.parameters");
         setParameters();
+        recorder.end();
     }
 
     public void setSmin(double smin) {
@@ -94,72 +103,69 @@ public class ScreenUtil {
     }
 
     public void repair() {
-        // fixed window
-
-        ArrayList<Pair<Long, Double>> ans = new ArrayList<>();
-        ans.add(new Pair<>(time[0], original[0]));
+        Recorder recorder = Recorder.current();
+        recorder.begin("screen.window");
+        // fixed window, over the first size points of repaired, those before startIndex repaired
+        System.arraycopy(original, 0, repaired, 0, n);
+        changed = 0;
         int startIndex = 0;
         for (int i = 1; i < n; i++) {
-            ans.add(new Pair<>(time[i], original[i]));
-            while (ans.get(startIndex).getKey() + w < ans.get(i).getKey()) {
+            while (time[startIndex] + w < time[i]) {
                 // sliding window
-                local(ans, startIndex);
+                local(startIndex, i + 1);
                 startIndex++;
             }
         }
         while (startIndex < n) {
-            local(ans, startIndex);
+            local(startIndex, n);
             startIndex++;
         }
-        int k = 0;
-        for (Pair<Long, Double> p : ans) {
-            this.repaired[k] = p.getValue();
-            k++;
-        }
+        recorder.end();
+        recorder.iteration(changed);
     }
 
-    private double getMedian(ArrayList<Pair<Long, Double>> list, int index) {
+    private double getMedian(int index, int size) {
         int m = 0;
-        while (index + m + 1 < list.size()
-                && list.get(index + m + 1).getKey() <= list.get(index).getKey() + w) {
+        while (index + m + 1 < size
+                && time[index + m + 1] <= time[index] + w) {
             m++;
         }
-        double[] x = new double[2 * m + 1];
-        x[0] = list.get(index).getValue();
+        if (window.length < 2 * m + 1)
+            window = new double[Math.max(2 * m + 1, 2 * window.length)];
+        double[] x = window;
+        x[0] = repaired[index];
         for (int i = 1; i <= m; i++) {
             x[i] =
-                    list.get(index + i).getValue()
-                            + smin * (list.get(index).getKey() - list.get(index + i).getKey());
+                    repaired[index + i]
+                            + smin * (time[index] - time[index + i]);
             x[i + m] =
-                    list.get(index + i).getValue()
-                            + smax * (list.get(index).getKey() - list.get(index + i).getKey());
+                    repaired[index + i]
+                            + smax * (time[index] - time[index + i]);
         }
-        Arrays.sort(x);
+        Arrays.sort(x, 0, 2 * m + 1);
         return x[m];
     }
 
-    private double getRepairedValue(ArrayList<Pair<Long, Double>> list, int index, double mid) {
+    private double getRepairedValue(int index, double mid) {
         double xmin =
-                list.get(index - 1).getValue()
-                        + smin * (list.get(index).getKey() - list.get(index - 1).getKey());
+                repaired[index - 1]
+                        + smin * (time[index] - time[index - 1]);
         double xmax =
-                list.get(index - 1).getValue()
-                        + smax * (list.get(index).getKey() - list.get(index - 1).getKey());
+                repaired[index - 1]
+                        + smax * (time[index] - time[index - 1]);
         double temp = mid;
         temp = Math.min(xmax, temp);
         temp = Math.max(xmin, temp);
         return temp;
     }
 
-    private void local(ArrayList<Pair<Long, Double>> list, int index) {
-        double mid = getMedian(list, index);
+    private void local(int index, int size) {
+        double mid = getMedian(index, size);
         // 计算x_k'
-        if (index == 0) {
-            list.set(index, new Pair<>(list.get(index).getKey(), mid));
-        } else {
-            double temp = getRepairedValue(list, index, mid);
-            list.set(index, new Pair<>(list.get(index).getKey(), temp));
-        }
+        double temp = index == 0 ? mid : getRepairedValue(index, mid);
+        if (temp != repaired[index])
+            changed++;
+        repaired[index] = temp;
     }
 
     private void processNaN() throws Exception {
@@ -1,43 +1,39 @@
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
+import Algorithm.util.ErrorAccumulator;
+import Algorithm.util.LabelMask;
+
 import java.io.IOException;
 
 public class Analysis {
+    private final long[] td_time;
     private final double[] td_clean;
     private final double[] td_repair;
-    private final boolean[] td_bool;
+    private final LabelMask mask;
 
     private double MAE;
     private double RMSE;
     private double MAPE;
+    private ErrorAccumulator accumulator;
     private final long cost_time;
 
     public Analysis(long[] td_time, double[] td_clean, double[] td_repair, boolean[] td_bool, long cost_time) {
+        this(td_time, td_clean, td_repair, LabelMask.of(td_bool), cost_time);
+    }
+
+    public Analysis(long[] td_time, double[] td_clean, double[] td_repair, LabelMask mask, long cost_time) {
+        this.td_time = td_time;
         this.td_clean = td_clean;
         this.td_repair = td_repair;
-        this.td_bool = td_bool;
+        this.mask = mask;
         this.cost_time = cost_time;
 
         this.analysis();
     }
 
     private void analysis() {
-        int dataLen = td_repair.length, labelNum = 0;
-        for (int i = 0; i < dataLen; i++) {
-            if (td_bool[i]) {
-                labelNum++;
-                continue;
-            }
-
-            this.MAE += Math.abs(td_clean[i] - td_repair[i]);
-            this.MAPE += Math.abs((td_clean[i] - td_repair[i]) / (td_clean[i] + 0.001) * 100);
-            this.RMSE += Math.pow((td_clean[i] - td_repair[i]), 2);
-        }
-
-        this.MAE = this.MAE / (dataLen - labelNum);
-        this.MAPE = this.MAE / (dataLen - labelNum);
-        this.RMSE = Math.sqrt(this.RMSE / (dataLen - labelNum));
+        this.accumulator = ErrorAccumulator.score(td_clean, td_repair, mask, 1);
+        this.MAE = accumulator.getMAE();
+        this.MAPE = accumulator.getMAPE();
+        this.RMSE = accumulator.getRMSE();
     }
 
     public String getMAE() {
@@ -52,22 +48,31 @@ public class Analysis {
         return String.format("%.3f", this.MAPE);
     }
 
+    /**
+     * the raw sums, max error and label counts behind the metrics
+     */
+    public ErrorAccumulator getAccumulator() {
+        return accumulator;
+    }
+
     public long getCost_time() {
         return this.cost_time;
     }
 
     public void writeRepairResultToFile(String targetFileName) {
-        File writeFile = new File(targetFileName);
         try {
-            BufferedWriter writeText = new BufferedWriter(new FileWriter(writeFile));
-            writeText.write("timestamp,value");
-            for (int j = 0; j < this.td_repair.length; j++) {
-                writeText.newLine();
-                double val = this.td_repair[j];
-                writeText.write(j + "," + val);
-            }
-            writeText.flush();
-            writeText.close();
+            new SeriesWriter().writeCsv(targetFileName, td_time, td_repair);
+        } catch (IOException e) {
+            System.out.println("Error");
+        }
+    }
+
+    /**
+     * only the points the repair changed
+     */
+    public void writeRepairedPointsToFile(String targetFileName, double[] td_dirty) {
+        try {
+            new SeriesWriter().writeCsv(targetFileName, td_time, td_repair, td_dirty);
         } catch (IOException e) {
             System.out.println("Error");
         }
@@ -0,0 +1,140 @@
+import Algorithm.EWMA;
+import Algorithm.Lsgreedy;
+import Algorithm.SCREEN;
+import Algorithm.SRD;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Repairs a csv file of any size block by block and writes the repaired "timestamp,value" csv:
+ * <pre>
+ * BatchRepair input.csv output.csv [algorithm=SRD] [block=100000] [overlap=1000] [period=144]
+ * </pre>
+ * Every block is repaired together with the last overlap points of the previous one, which give
+ * the repair its context and are not written again. Once the rows of a block are forced to disk
+ * its index and the output size are checkpointed in output.done, and a restart truncates the
+ * output to the last checkpointed size and continues with the next block; delete output.done to
+ * start over. The first record of output.done holds the input and the options, and a restart with
+ * another input or other options is refused, its blocks would not line up with the written ones.
+ */
+public class BatchRepair {
+    private static final int ROW_BYTES = 64;
+    private static final byte[] HEADER = "timestamp,value\n".getBytes();
+
+    private final String algorithm;
+    private final int blockSize, overlap, period;
+    private byte[] bytes = new byte[1 << 16];
+
+    public BatchRepair(String algorithm, int blockSize, int overlap, int period) {
+        this.algorithm = algorithm;
+        this.blockSize = blockSize;
+        this.overlap = overlap;
+        this.period = period;
+    }
+
+    /**
+     * @return blocks repaired by this call, not counting those done before
+     */
+    public int run(String input, String output) throws Exception {
+        try (Checkpoint checkpoint = new Checkpoint(output + ".done");
+             FileChannel channel = FileChannel.open(Path.of(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             ChunkedLoader loader = new ChunkedLoader(input, blockSize, overlap)) {
+            String params = "input=" + Path.of(input).toAbsolutePath().normalize() + " length=" + Files.size(Path.of(input))
+                    + " block=" + blockSize + " overlap=" + overlap + " algorithm=" + algorithm + " period=" + period;
+            if (checkpoint.getFirst() == null)
+                checkpoint.add(params);
+            else if (!checkpoint.getFirst().equals(params))
+                throw new IllegalStateException(output + ".done was written with " + checkpoint.getFirst()
+                        + ", not " + params + "; delete it to start over");
+            long doneBlocks = 0, size = 0;
+            String last = checkpoint.getLast();
+            if (!last.equals(params)) {
+                String[] parts = last.split(" ");
+                doneBlocks = Long.parseLong(parts[0]) + 1;
+                size = Long.parseLong(parts[1]);
+            }
+            channel.truncate(size);
+            channel.position(size);
+            if (size == 0)
+                write(channel, HEADER, HEADER.length);
+
+            long blockIdx = 0;
+            int repaired = 0;
+            while (loader.hasNext()) {
+                try (ChunkedLoader.Block block = loader.next()) {
+                    // done blocks are still read, the next block starts with their overlap
+                    if (blockIdx < doneBlocks) {
+                        blockIdx++;
+                        continue;
+                    }
+                    long[] td_time = Arrays.copyOf(block.getTd_time(), block.getSize());
+                    double[] td_repair = repair(td_time, Arrays.copyOf(block.getTd_value(), block.getSize()));
+                    write(channel, td_time, td_repair, block.getOverlap());
+                    channel.force(false);
+                    checkpoint.add(blockIdx + " " + channel.position());
+                    blockIdx++;
+                    repaired++;
+                }
+            }
+            return repaired;
+        }
+    }
+
+    private double[] repair(long[] td_time, double[] td_dirty) throws Exception {
+        return switch (algorithm) {
+            case "SRD" -> new SRD(td_time, td_dirty, period, 6.0, 5).getTd_repair();
+            case "SCREEN" -> new SCREEN(td_time, td_dirty).getTd_repair();
+            case "Lsgreedy" -> new Lsgreedy(td_time, td_dirty).getTd_repair();
+            case "EWMA" -> new EWMA(td_time, td_dirty).getTd_repair();
+            default -> throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        };
+    }
+
+    private void write(FileChannel channel, long[] td_time, double[] td_value, int from) throws IOException {
+        int need = (td_value.length - from) * ROW_BYTES;
+        if (bytes.length < need)
+            bytes = new byte[need];
+        int pos = 0;
+        for (int i = from; i < td_value.length; ++i) {
+            pos = ByteFormat.putLong(bytes, pos, td_time[i]);
+            bytes[pos++] = ',';
+            pos = ByteFormat.putDouble(bytes, pos, td_value[i]);
+            bytes[pos++] = '\n';
+        }
+        write(channel, bytes, pos);
+    }
+
+    private static void write(FileChannel channel, byte[] src, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(src, 0, length);
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("BatchRepair <input.csv> <output.csv> [algorithm=SRD] [block=100000] [overlap=1000] [period=144]");
+            System.exit(1);
+        }
+        String algorithm = "SRD";
+        int blockSize = 100000, overlap = 1000, period = 144;
+        for (int i = 2; i < args.length; ++i) {
+            String[] kv = args[i].split("=", 2);
+            switch (kv[0]) {
+                case "algorithm" -> algorithm = kv[1];
+                case "block" -> blockSize = Integer.parseInt(kv[1]);
+                case "overlap" -> overlap = Integer.parseInt(kv[1]);
+                case "period" -> period = Integer.parseInt(kv[1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        int blocks = new BatchRepair(algorithm, blockSize, overlap, period).run(args[0], args[1]);
+        System.out.println(blocks + " blocks repaired in " + (System.currentTimeMillis() - startTime) + "ms -> " + args[1]);
+    }
+}
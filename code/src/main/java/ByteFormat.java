@@ -0,0 +1,218 @@
+import java.math.BigInteger;
+
+/**
+ * Formats numbers straight into a byte[] without String garbage. Every method writes at pos
+ * and returns the position after the last byte written.
+ */
+public final class ByteFormat {
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+    private static final double FIXED_LIMIT = 1e15;
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes();
+    private static final byte[] NAN = "NaN".getBytes(), INFINITY = "Infinity".getBytes(), NEG_INFINITY = "-Infinity".getBytes();
+
+    // Schubfach, see R. Giulietti, "The Schubfach way to render doubles", and Double.toString since Java 19
+    private static final int Q_MIN = -1074, K_MIN = -324, K_MAX = 292;
+    private static final long C_MIN = 1L << 52, C_TINY = 3, T_MASK = C_MIN - 1, MASK_63 = (1L << 63) - 1;
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)]; // g1, g0 per k
+
+    static {
+        // 10^-k = beta * 2^r with 2^125 <= beta < 2^126, g = floor(beta) + 1 split into 63 bit halves
+        BigInteger mask = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; ++k) {
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger p = BigInteger.TEN.pow(-k);
+                int r = p.bitLength() - 126;
+                g = r >= 0 ? p.shiftRight(r) : p.shiftLeft(-r);
+            } else {
+                BigInteger p = BigInteger.TEN.pow(k);
+                g = BigInteger.ONE.shiftLeft(125 + p.bitLength()).divide(p);
+            }
+            g = g.add(BigInteger.ONE);
+            G[k - K_MIN << 1] = g.shiftRight(63).longValue();
+            G[k - K_MIN << 1 | 1] = g.and(mask).longValue();
+        }
+    }
+
+    private ByteFormat() {
+    }
+
+    public static int putLong(byte[] buf, int pos, long v) {
+        if (v == Long.MIN_VALUE)
+            return putBytes(buf, pos, LONG_MIN);
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos + digits(v);
+        for (int i = end - 1; i >= pos; --i) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * v rounded half up to the given decimals (at most 9), trailing zeros dropped
+     */
+    public static int putFixed(byte[] buf, int pos, double v, int decimals) {
+        double scaled = Math.abs(v) * POW10[decimals];
+        if (!(scaled < FIXED_LIMIT)) // large, NaN or infinite
+            return putDouble(buf, pos, v);
+        long m = (long) (scaled + 0.5);
+        if (v < 0 && m != 0)
+            buf[pos++] = '-';
+        return putScaled(buf, pos, m, decimals);
+    }
+
+    /**
+     * the shortest decimal that parses back to v, the digits of Double.toString since Java 19.
+     * Plain for 1e-9 <= |v| < 1e15 and without a fraction for integers, else d.dddE[-]n
+     */
+    public static int putDouble(byte[] buf, int pos, double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> 52) & 0x7FF;
+        if (bq == 0x7FF)
+            return putBytes(buf, pos, t != 0 ? NAN : bits > 0 ? INFINITY : NEG_INFINITY);
+        if (bits < 0)
+            buf[pos++] = '-';
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < 53) { // integers
+                long f = c >> mq;
+                if (f << mq == c)
+                    return putDecimal(buf, pos, f, 0);
+            }
+            return toDecimal(buf, pos, -mq, c, 0);
+        }
+        if (t == 0) {
+            buf[pos++] = '0';
+            return pos;
+        }
+        // subnormal
+        return t < C_TINY ? toDecimal(buf, pos, Q_MIN, 10 * t, -1) : toDecimal(buf, pos, Q_MIN, t, 0);
+    }
+
+    /**
+     * the shortest f * 10^e in the rounding interval of c * 2^q
+     */
+    private static int toDecimal(byte[] buf, int pos, int q, long c, int dk) {
+        int out = (int) c & 1;
+        long cb = c << 2, cbr = cb + 2, cbl;
+        int k;
+        if (c != C_MIN | q == Q_MIN) {
+            cbl = cb - 2;
+            k = (int) (q * 661_971_961_083L >> 41); // floor(q log10(2))
+        } else {
+            cbl = cb - 1;
+            k = (int) (q * 661_971_961_083L - 274_743_187_321L >> 41); // floor(q log10(2) + log10(3/4))
+        }
+        int h = q + (int) (-k * 913_124_641_741L >> 38) + 2; // floor(-k log2(10))
+        long g1 = G[k - K_MIN << 1], g0 = G[k - K_MIN << 1 | 1];
+        long vb = rop(g1, g0, cb << h), vbl = rop(g1, g0, cbl << h), vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4); // 10 * floor(s / 10)
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2, wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin)
+                return putDecimal(buf, pos, upin ? sp10 : tp10, k);
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2, win = (t << 2) + out <= vbr;
+        if (uin != win)
+            return putDecimal(buf, pos, uin ? s : t, k + dk);
+        long cmp = vb - (s + t << 1);
+        return putDecimal(buf, pos, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk);
+    }
+
+    /**
+     * round to odd of g * cp / 2^127
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * f * 10^e for f > 0
+     */
+    private static int putDecimal(byte[] buf, int pos, long f, int e) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int len = digits(f), k = e + len - 1; // k is the exponent of the first digit
+        if (k < -9 || k >= 15) { // d.dddEk
+            putLong(buf, pos + 1, f);
+            buf[pos] = buf[pos + 1];
+            buf[pos + 1] = '.';
+            pos += len + 1;
+            if (len == 1)
+                buf[pos++] = '0';
+            buf[pos++] = 'E';
+            return putLong(buf, pos, k);
+        }
+        if (e >= 0) {
+            pos = putLong(buf, pos, f);
+            for (int i = 0; i < e; ++i)
+                buf[pos++] = '0';
+            return pos;
+        }
+        if (k < 0) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int i = -1; i > k; --i)
+                buf[pos++] = '0';
+            return putLong(buf, pos, f);
+        }
+        // k + 1 digits before the point
+        int end = putLong(buf, pos + 1, f);
+        System.arraycopy(buf, pos + 1, buf, pos, k + 1);
+        buf[pos + k + 1] = '.';
+        return end;
+    }
+
+    /**
+     * m * 10^-decimals
+     */
+    private static int putScaled(byte[] buf, int pos, long m, int decimals) {
+        while (decimals > 0 && m % 10 == 0) {
+            m /= 10;
+            decimals--;
+        }
+        long intPart = m / POW10[decimals], frac = m % POW10[decimals];
+        pos = putLong(buf, pos, intPart);
+        if (decimals == 0)
+            return pos;
+        buf[pos++] = '.';
+        int end = pos + decimals;
+        for (int i = end - 1; i >= pos; --i) {
+            buf[i] = (byte) ('0' + frac % 10);
+            frac /= 10;
+        }
+        return end;
+    }
+
+    private static int putBytes(byte[] buf, int pos, byte[] bytes) {
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Durable set of finished work, an append-only journal with one key per line that is forced to
+ * disk on every add. Add a key only once the results of its work are durable, then a restart that
+ * skips the keys found here loses nothing. A line cut short by a crash is dropped on open. Like
+ * ResultSink it writes through a RandomAccessFile, which an interrupted worker does not close.
+ */
+public class Checkpoint implements AutoCloseable {
+    private final RandomAccessFile file;
+    private final Set<String> keys = new HashSet<>();
+    private String first, last;
+
+    public Checkpoint(String filename) throws IOException {
+        file = new RandomAccessFile(filename, "rw");
+        long size = ResultSink.truncatePartialLine(file);
+        file.seek(size);
+        if (size > 0) {
+            List<String> lines = Files.readAllLines(Path.of(filename), StandardCharsets.UTF_8);
+            keys.addAll(lines);
+            first = lines.get(0);
+            last = lines.get(lines.size() - 1);
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    /**
+     * the key added first, also by a previous run, null if none
+     */
+    public synchronized String getFirst() {
+        return first;
+    }
+
+    /**
+     * the key added last, also by a previous run, null if none
+     */
+    public synchronized String getLast() {
+        return last;
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    public synchronized void add(String key) throws IOException {
+        if (key.indexOf('\n') >= 0)
+            throw new IllegalArgumentException("Keys are single lines");
+        file.write((key + "\n").getBytes(StandardCharsets.UTF_8));
+        file.getFD().sync();
+        keys.add(key);
+        if (first == null)
+            first = key;
+        last = key;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pull-based reader of "timestamp,value[,label]" csv files in fixed-size blocks, so that
+ * arbitrarily large files are processed with constant memory.
+ * <p>
+ * Every block starts with the last overlap points of the previous block. Blocks come from a
+ * pool and go back to it on close(), so a consumer that closes its blocks allocates nothing
+ * after the first few.
+ * <p>
+ * A reader over [startOffset, endOffset) owns the lines whose first byte lies in the range,
+ * so readers over adjacent ranges (see split) read disjoint rows and together read every row.
+ */
+public class ChunkedLoader implements Iterator<ChunkedLoader.Block>, AutoCloseable {
+    private static final long WINDOW = 1L << 26;
+
+    private final FileChannel channel;
+    private final long fileSize, endOffset;
+    private final int blockSize, overlap;
+    private final Queue<Block> pool = new ConcurrentLinkedQueue<>();
+
+    private MappedByteBuffer buf;
+    private long bufStart, bufEnd;
+    private long pos; // file offset of the next line
+    private long index; // rows read so far
+    private boolean hasLabel;
+
+    // the last overlap points, carried into the next block
+    private final long[] tailTime;
+    private final double[] tailValue;
+    private final boolean[] tailLabel;
+    private int tailSize;
+
+    private Block pending;
+    private boolean done;
+
+    public ChunkedLoader(String filename, int blockSize, int overlap) throws IOException {
+        this(filename, blockSize, overlap, 0, Long.MAX_VALUE);
+    }
+
+    public ChunkedLoader(String filename, int blockSize, int overlap, long startOffset, long endOffset) throws IOException {
+        if (blockSize <= 0 || overlap < 0 || overlap >= blockSize)
+            throw new IllegalArgumentException("Need 0 <= overlap < blockSize");
+        this.channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.endOffset = Math.min(endOffset, fileSize);
+        this.blockSize = blockSize;
+        this.overlap = overlap;
+        this.tailTime = new long[overlap];
+        this.tailValue = new double[overlap];
+        this.tailLabel = new boolean[overlap];
+        // the header belongs to the range starting at 0, a line crossing startOffset to the previous range
+        this.pos = startOffset == 0 ? MappedCsvReader.lineEnd(channel, 0, fileSize)
+                : MappedCsvReader.lineEnd(channel, startOffset - 1, fileSize);
+    }
+
+    /**
+     * n + 1 byte offsets that cut the file into n ranges of about the same size
+     */
+    public static long[] split(String filename, int n) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] offsets = new long[n + 1];
+            for (int i = 0; i <= n; ++i)
+                offsets[i] = size * i / n;
+            return offsets;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null && !done) {
+            try {
+                fill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Block next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Block block = pending;
+        pending = null;
+        return block;
+    }
+
+    /**
+     * whether the file has a third column
+     */
+    public boolean hasLabel() {
+        return hasLabel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buf = null;
+        channel.close();
+    }
+
+    private void fill() throws IOException {
+        Block block = pool.poll();
+        if (block == null)
+            block = new Block();
+        System.arraycopy(tailTime, 0, block.td_time, 0, tailSize);
+        System.arraycopy(tailValue, 0, block.td_value, 0, tailSize);
+        System.arraycopy(tailLabel, 0, block.td_label, 0, tailSize);
+        block.size = block.overlap = tailSize;
+        block.start = index - tailSize;
+
+        while (block.size < blockSize && readRow(block))
+            block.size++;
+        int rows = block.size - block.overlap;
+        if (rows == 0) {
+            pool.offer(block);
+            done = true;
+            return;
+        }
+        index += rows;
+
+        tailSize = Math.min(overlap, block.size);
+        int from = block.size - tailSize;
+        System.arraycopy(block.td_time, from, tailTime, 0, tailSize);
+        System.arraycopy(block.td_value, from, tailValue, 0, tailSize);
+        System.arraycopy(block.td_label, from, tailLabel, 0, tailSize);
+        pending = block;
+    }
+
+    /**
+     * parse the next row into block[block.size], false at the end of the range
+     */
+    private boolean readRow(Block block) throws IOException {
+        boolean remapped = false;
+        while (pos < endOffset) {
+            if (buf == null || pos >= bufEnd) {
+                map(pos);
+                remapped = true;
+            }
+            int start = (int) (pos - bufStart), limit = buf.limit(), end = start;
+            while (end < limit && buf.get(end) != '\n') end++;
+            if (end == limit && bufEnd < fileSize) { // the line continues after the window
+                if (remapped)
+                    throw new IOException("Line exceeds the mapping window");
+                map(pos);
+                remapped = true;
+                continue;
+            }
+            pos = bufStart + end + 1;
+            remapped = false;
+            if (parseLine(start, end, block))
+                return true;
+        }
+        return false;
+    }
+
+    private void map(long offset) throws IOException {
+        bufStart = offset;
+        bufEnd = Math.min(fileSize, offset + WINDOW);
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, bufStart, bufEnd - bufStart);
+    }
+
+    private boolean parseLine(int start, int end, Block block) {
+        if (end > start && buf.get(end - 1) == '\r') end--;
+        if (end <= start) return false; // blank line
+
+        int comma = start;
+        while (comma < end && buf.get(comma) != ',') comma++;
+        int valueEnd = comma + 1;
+        while (valueEnd < end && buf.get(valueEnd) != ',') valueEnd++;
+        int i = block.size;
+        try {
+            block.td_time[i] = MappedCsvReader.parseLong(buf, start, comma);
+            block.td_value[i] = MappedCsvReader.parseDouble(buf, comma + 1, valueEnd);
+            if (valueEnd < end) {
+                int labelEnd = valueEnd + 1;
+                while (labelEnd < end && buf.get(labelEnd) != ',') labelEnd++;
+                block.td_label[i] = MappedCsvReader.parseDouble(buf, valueEnd + 1, labelEnd) != 0;
+                hasLabel = true;
+            } else {
+                block.td_label[i] = false;
+            }
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Row at byte " + (bufStart + start) + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * up to blockSize points, the first getOverlap() of them repeated from the previous block
+     */
+    public class Block implements AutoCloseable {
+        private final long[] td_time = new long[blockSize];
+        private final double[] td_value = new double[blockSize];
+        private final boolean[] td_label = new boolean[blockSize];
+        private int size, overlap;
+        private long start;
+
+        public long[] getTd_time() {
+            return td_time;
+        }
+
+        public double[] getTd_value() {
+            return td_value;
+        }
+
+        public boolean[] getTd_label() {
+            return td_label;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getOverlap() {
+            return overlap;
+        }
+
+        /**
+         * row index of td_time[0] within the range of the reader
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * return the buffers to the pool
+         */
+        @Override
+        public void close() {
+            pool.offer(this);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Loads the largest prefix of a dataset once and serves shorter prefixes from memory.
+ * <p>
+ * A slice is normalised with the range of its own prefix, exactly as LoadData would, and only
+ * re-normalised when that range differs from the range of the whole cached prefix. The noise
+ * pattern of AddNoise does not depend on the data, so it is drawn once per (rate, length, seed)
+ * and only rescaled by the data range of every slice. LabelData samples with the slice length,
+ * so labels are still drawn per slice.
+ * <p>
+ * The saved time is estimated from the cost of the cached work, scaled to the slice length.
+ */
+public class DatasetCache {
+    private final long[] td_time;
+    private final double[] td_raw;
+    private final double max_v, min_v;
+    private double[] td_norm; // td_raw normalised with the whole range, built on first use
+
+    private double[] noisePattern;
+    private double noiseRate;
+    private int noiseLength, noiseSeed;
+
+    private final long loadNanos;
+    private long patternNanos;
+    private long savedNanos;
+
+    public DatasetCache(String dataPath, int maxLen) throws IOException {
+        long startTime = System.nanoTime();
+        if (SeriesFile.isSeriesFile(dataPath)) {
+            SeriesFile series = new SeriesFile(dataPath);
+            series.read(maxLen);
+            td_time = series.getTd_time();
+            td_raw = series.getTd_value();
+            max_v = series.getMax_v();
+            min_v = series.getMin_v();
+        } else {
+            MappedCsvReader reader = new MappedCsvReader();
+            reader.read(dataPath, maxLen, Runtime.getRuntime().availableProcessors());
+            td_time = reader.getTd_time();
+            td_raw = reader.getTd_value();
+            max_v = reader.getMax_v();
+            min_v = reader.getMin_v();
+        }
+        loadNanos = System.nanoTime() - startTime;
+        savedNanos = -loadNanos;
+    }
+
+    public int size() {
+        return td_raw.length;
+    }
+
+    /**
+     * the first dataLen timestamps
+     */
+    public long[] getTd_time(int dataLen) {
+        return Arrays.copyOf(td_time, Math.min(dataLen, td_time.length));
+    }
+
+    /**
+     * the first dataLen values, normalised like new LoadData(dataPath, dataLen).getTd_clean()
+     */
+    public double[] getTd_clean(int dataLen) {
+        long startTime = System.nanoTime();
+        int n = Math.min(dataLen, td_raw.length);
+        double max = Double.NEGATIVE_INFINITY, min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; ++i) {
+            if (td_raw[i] > max) max = td_raw[i];
+            if (td_raw[i] < min) min = td_raw[i];
+        }
+
+        double[] td_clean;
+        if (max == max_v && min == min_v) {
+            if (td_norm == null) {
+                td_norm = new double[td_raw.length];
+                for (int i = 0; i < td_raw.length; ++i)
+                    td_norm[i] = (td_raw[i] - min_v) / (max_v - min_v);
+            }
+            td_clean = Arrays.copyOf(td_norm, n);
+        } else { // the prefix has its own range
+            td_clean = new double[n];
+            for (int i = 0; i < n; ++i)
+                td_clean[i] = (td_raw[i] - min) / (max - min);
+        }
+        savedNanos += loadNanos * n / Math.max(1, td_raw.length) - (System.nanoTime() - startTime);
+        return td_clean;
+    }
+
+    /**
+     * same as new AddNoise(td_clean, rate, range, length, seed).getTd_dirty()
+     */
+    public double[] getTd_dirty(double[] td_clean, double rate, double range, int length, int seed) {
+        long startTime = System.nanoTime();
+        if (noisePattern == null || rate != noiseRate || length != noiseLength || seed != noiseSeed) {
+            noisePattern = AddNoise.noisePattern(td_raw.length, rate, length, seed);
+            noiseRate = rate;
+            noiseLength = length;
+            noiseSeed = seed;
+            patternNanos = System.nanoTime() - startTime;
+        } else {
+            savedNanos += patternNanos * td_clean.length / Math.max(1, td_raw.length);
+        }
+        double[] td_dirty = new double[td_clean.length];
+        AddNoise.applyNoise(td_clean, noisePattern, AddNoise.calRange(td_clean), range, td_dirty);
+        return td_dirty;
+    }
+
+    /**
+     * estimated time saved against reloading and redrawing every slice, in ms
+     */
+    public long getSavedTime() {
+        return savedNanos / 1_000_000;
+    }
+
+    /**
+     * time of the one load, in ms
+     */
+    public long getLoadTime() {
+        return loadNanos / 1_000_000;
+    }
+}
@@ -1,4 +1,8 @@
 import Algorithm.*;
+import Algorithm.util.ErrorAccumulator;
+import Algorithm.util.LabelMask;
+import Algorithm.util.Profile;
+import Algorithm.util.RepairMetrics;
 
 import java.util.Arrays;
 import java.io.FileWriter;
@@ -6,6 +10,13 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Experiment {
     private static final String INPUT_DIR = "";  // need to fill in according to the location of the dataset
@@ -74,84 +85,156 @@ public class Experiment {
 
     public static Analysis srdRepair(long[] td_time, double[] td_clean, double[] td_dirty, int period, double k, int max_iter, boolean[] td_bool) throws Exception {
         System.out.println("SRD");
-        SRD srrd = new SRD(td_time, td_dirty, period, k, max_iter);
-        double[] td_repair = srrd.getTd_repair();
-        long cost_time = srrd.getCost_time();
-        return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        RepairMetrics metrics = RepairMetrics.of("SRD");
+        metrics.start();
+        try {
+            long startTime = System.nanoTime();
+            SRD srrd = new SRD(td_time, td_dirty, period, k, max_iter);
+            double[] td_repair = srrd.getTd_repair();
+            metrics.record(td_dirty, td_repair, srrd.getIterationNum(), System.nanoTime() - startTime);
+            long cost_time = srrd.getCost_time();
+            return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        } finally {
+            metrics.end();
+        }
     }
 
     public static Analysis screenRepair(long[] td_time, double[] td_clean, double[] td_dirty, boolean[] td_bool) throws Exception {
         System.out.println("SCREEN");
-        SCREEN screen = new SCREEN(td_time, td_dirty);
-        double[] td_repair = screen.getTd_repair();
-        long cost_time = screen.getCost_time();
-        return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        RepairMetrics metrics = RepairMetrics.of("SCREEN");
+        metrics.start();
+        try {
+            long startTime = System.nanoTime();
+            SCREEN screen = new SCREEN(td_time, td_dirty);
+            double[] td_repair = screen.getTd_repair();
+            metrics.record(td_dirty, td_repair, 0, System.nanoTime() - startTime);
+            long cost_time = screen.getCost_time();
+            return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        } finally {
+            metrics.end();
+        }
     }
 
     public static Analysis lsgreedyRepair(long[] td_time, double[] td_clean, double[] td_dirty, boolean[] td_bool) throws Exception {
         System.out.println("Lsgreedy");
-        Lsgreedy lsgreedy = new Lsgreedy(td_time, td_dirty);
-        double[] td_repair = lsgreedy.getTd_repair();
-        long cost_time = lsgreedy.getCost_time();
-        return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        RepairMetrics metrics = RepairMetrics.of("Lsgreedy");
+        metrics.start();
+        try {
+            long startTime = System.nanoTime();
+            Lsgreedy lsgreedy = new Lsgreedy(td_time, td_dirty);
+            double[] td_repair = lsgreedy.getTd_repair();
+            metrics.record(td_dirty, td_repair, lsgreedy.getStepNum(), System.nanoTime() - startTime);
+            long cost_time = lsgreedy.getCost_time();
+            return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        } finally {
+            metrics.end();
+        }
     }
 
     public static Analysis imrRepair(long[] td_time, double[] td_clean, double[] td_dirty, double[] td_label, boolean[] td_bool) throws Exception {
         System.out.println("IMR");
-        IMR imr = new IMR(td_time, td_dirty, td_label, td_bool);
-        double[] td_repair = imr.getTd_repair();
-        long cost_time = imr.getCost_time();
-        return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        RepairMetrics metrics = RepairMetrics.of("IMR");
+        metrics.start();
+        try {
+            long startTime = System.nanoTime();
+            IMR imr = new IMR(td_time, td_dirty, td_label, td_bool);
+            double[] td_repair = imr.getTd_repair();
+            metrics.record(td_dirty, td_repair, imr.getIterationNum(), System.nanoTime() - startTime);
+            long cost_time = imr.getCost_time();
+            return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        } finally {
+            metrics.end();
+        }
     }
 
     public static Analysis ewmaRepair(long[] td_time, double[] td_clean, double[] td_dirty, boolean[] td_bool) throws Exception {
         System.out.println("EWMA");
-        EWMA ewma = new EWMA(td_time, td_dirty);
-        double[] td_repair = ewma.getTd_repair();
-        long cost_time = ewma.getCost_time();
-        return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        RepairMetrics metrics = RepairMetrics.of("EWMA");
+        metrics.start();
+        try {
+            long startTime = System.nanoTime();
+            EWMA ewma = new EWMA(td_time, td_dirty);
+            double[] td_repair = ewma.getTd_repair();
+            metrics.record(td_dirty, td_repair, 0, System.nanoTime() - startTime);
+            long cost_time = ewma.getCost_time();
+            return new Analysis(td_time, td_clean, td_repair, td_bool, cost_time);
+        } finally {
+            metrics.end();
+        }
     }
 
-    public static void recordRMSE(String string) throws Exception {
-        FileWriter fileWritter = new FileWriter(OUTPUT_DIR + "expRMSE.txt", true);
-        BufferedWriter bw = new BufferedWriter(fileWritter);
-        bw.write(string);
-        bw.close();
+    private static final String[] RESULT_COLUMNS = {"dataset", "task", "base", "dataLen", "error_rate", "error_range",
+            "error_length", "algorithm", "rmse", "mae", "mape", "cost_ms", "alloc_bytes"};
+    private static final String[] ALGORITHMS = {"SRD", "SCREEN", "Lsgreedy", "IMR", "EWMA"};
+
+    public static void main_cmp() throws Exception { //synthetic
+        // one record per run, the file stays open for the whole experiment; runs in the checkpoint
+        // finished before and are skipped, delete expResults.csv.done to start over
+        String output = OUTPUT_DIR + "expResults.csv";
+        try (ResultSink results = new ResultSink(output, RESULT_COLUMNS);
+             Checkpoint checkpoint = new Checkpoint(output + ".done")) {
+            main_cmp(results, checkpoint);
+        }
     }
 
-    public static void recordTime(String string) throws Exception {
-        FileWriter fileWritter = new FileWriter(OUTPUT_DIR + "expTime.txt", true);
-        BufferedWriter bw = new BufferedWriter(fileWritter);
-        bw.write(string);
-        bw.close();
+    /**
+     * the parameters of the step base of the task
+     */
+    private static void setBase(int base) {
+        switch (task) {
+            case "scala" -> dataLen = base * (int) scale;
+            case "rate" -> error_rate = base * scale;
+            case "range" -> error_range = base * scale;
+            case "length" -> error_length = base * (int) scale;
+        }
     }
 
-    public static void main_cmp() throws Exception { //synthetic
+    /**
+     * every parameter of a run, so a run with a changed list or setting is not taken for done
+     */
+    private static String runKey(int base, int j) {
+        return datasetFile + "," + task + "," + base + "," + dataLen + "," + error_rate + "," + error_range + ","
+                + error_length + "," + period + "," + k + "," + max_iter + "," + label_rate + "," + seed + "," + ALGORITHMS[j - 1];
+    }
+
+    private static boolean isDone(Checkpoint checkpoint, int base) {
+        for (int j = 1; j < 6; j++)
+            if (!checkpoint.contains(runKey(base, j)))
+                return false;
+        return true;
+    }
+
+    private static void main_cmp(ResultSink results, Checkpoint checkpoint) throws Exception {
         for (int datasetIdx = 0; datasetIdx < datasetFileList.length; ++datasetIdx) {
             for (int taskIdx = 0; taskIdx < taskList.length; ++taskIdx) {
                 // reset
                 reset(datasetIdx, taskIdx);
 
+                boolean finished = true;
+                for (int base = 1; base <= 5; base++) {
+                    setBase(base);
+                    finished &= isDone(checkpoint, base);
+                }
+                if (finished) {
+                    System.out.print(datasetName + " " + task + " done before\n");
+                    continue;
+                }
                 System.out.print(datasetName + " " + task + " " + x_ticks + "\n");
-                recordRMSE(datasetName + "_rmse " + task + " " + x_ticks + "\n");
-                recordTime(datasetName + "_time " + task + " " + x_ticks + "\n");
+
+                // every step reads a prefix of the same file
+                DatasetCache cache = new DatasetCache(INPUT_DIR + datasetFile, task.equals("scala") ? 5 * (int) scale : dataLen);
 
                 for (int base = 1; base <= 5; base++) {
-                    switch (task) {
-                        case "scala" -> dataLen = base * (int) scale;
-                        case "rate" -> error_rate = base * scale;
-                        case "range" -> error_range = base * scale;
-                        case "length" -> error_length = base * (int) scale;
-                    }
+                    setBase(base);
+                    if (isDone(checkpoint, base))
+                        continue;
 
                     // start
-                    LoadData loadData = new LoadData(INPUT_DIR + datasetFile, dataLen);
-                    long[] td_time = loadData.getTd_time();
-                    double[] td_clean = loadData.getTd_clean();
+                    long[] td_time = cache.getTd_time(dataLen);
+                    double[] td_clean = cache.getTd_clean(dataLen);
 
                     // add noise
-                    AddNoise addNoise = new AddNoise(td_clean, error_rate, error_range, error_length, seed);
-                    double[] td_dirty = addNoise.getTd_dirty();
+                    double[] td_dirty = cache.getTd_dirty(td_clean, error_rate, error_range, error_length, seed);
 
                     // label4imr
                     LabelData labelData = new LabelData(td_clean, td_dirty, label_rate, seed);
@@ -163,6 +246,9 @@ public class Experiment {
 
                     Analysis analysis;
                     for (int j = 1; j < 6; j++) {
+                        if (checkpoint.contains(runKey(base, j)))
+                            continue;
+                        long allocated = Profile.allocatedBytes();
                         switch (j) {
                             case 1 ->
                                     analysis = srdRepair(td_time, td_clean, td_dirty, period, k, max_iter, default_bool);
@@ -171,14 +257,17 @@ public class Experiment {
                             case 4 -> analysis = imrRepair(td_time, td_clean, td_dirty, td_label, td_bool);
                             default -> analysis = ewmaRepair(td_time, td_clean, td_dirty, default_bool);
                         }
-                        recordRMSE(analysis.getRMSE() + ",");
-                        recordTime(analysis.getCost_time() + ",");
+                        allocated = allocated < 0 ? -1 : Profile.allocatedBytes() - allocated;
+                        ErrorAccumulator acc = analysis.getAccumulator();
+                        results.write(datasetName, task, base, dataLen, error_rate, error_range, error_length,
+                                ALGORITHMS[j - 1], acc.getRMSE(), acc.getMAE(), acc.getMAPE(), analysis.getCost_time(), allocated);
+                        results.flush();
+                        checkpoint.add(runKey(base, j));
                         System.gc();
                         Runtime.getRuntime().gc();
                     }
-                    recordRMSE("\n");
-                    recordTime("\n");
                 }
+                System.out.println("dataset cache: load " + cache.getLoadTime() + "ms, saved " + cache.getSavedTime() + "ms");
             }
         }
     }
@@ -229,9 +318,337 @@ public class Experiment {
         );
     }
 
+    public static void main_imr_parallel(String dataPath, int dataLen, int syncInterval) throws Exception { // parallel IMR vs sequential
+        LoadData loadData = new LoadData(dataPath, dataLen);
+        long[] td_time = loadData.getTd_time();
+        double[] td_clean = loadData.getTd_clean();
+        AddNoise addNoise = new AddNoise(td_clean, 5.0, 2.0, 25, seed);
+        double[] td_dirty = addNoise.getTd_dirty();
+        LabelData labelData = new LabelData(td_clean, td_dirty, 0.5, seed);
+        double[] td_label = labelData.getTd_label();
+        boolean[] td_bool = labelData.getTd_bool();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= Math.max(4, cores); workers *= 2) {
+            IMR imr = new IMR(td_time, td_dirty, td_label, td_bool, workers, syncInterval);
+            Analysis analysis = new Analysis(td_time, td_clean, imr.getTd_repair(), td_bool, imr.getCost_time());
+            StringBuilder sb = new StringBuilder();
+            sb.append("workers=").append(workers)
+                    .append(" time=").append(imr.getCost_time()).append("ms")
+                    .append(" rmse=").append(analysis.getRMSE())
+                    .append(workers == 1 ? " iterations=" : " epochs=").append(imr.getIterationNum());
+            if (imr.getWorkerThroughput() != null) {
+                sb.append(" rows/s per worker=");
+                for (double v : imr.getWorkerThroughput())
+                    sb.append(String.format("%.3e ", v));
+            }
+            System.out.println(sb);
+        }
+    }
+
+    public static void main_imr_stream(String dataPath, int dataLen) throws Exception { // online IMR vs batch
+        LoadData loadData = new LoadData(dataPath, dataLen);
+        long[] td_time = loadData.getTd_time();
+        double[] td_clean = loadData.getTd_clean();
+        AddNoise addNoise = new AddNoise(td_clean, 5.0, 2.0, 25, seed);
+        double[] td_dirty = addNoise.getTd_dirty();
+        LabelData labelData = new LabelData(td_clean, td_dirty, 0.5, seed);
+        double[] td_label = labelData.getTd_label();
+        boolean[] td_bool = labelData.getTd_bool();
+
+        Analysis batch = imrRepair(td_time, td_clean, td_dirty, td_label, td_bool);
+        System.out.println("batch: time=" + batch.getCost_time() + "ms rmse=" + batch.getRMSE());
+        for (int lag : new int[]{0, 16, 64, 256}) {
+            IMRStream stream = new IMRStream(td_time, td_dirty, td_label, td_bool, lag, lag / 2);
+            Analysis analysis = new Analysis(td_time, td_clean, stream.getTd_repair(), td_bool, stream.getCost_time());
+            System.out.println("stream lag=" + lag + ": time=" + stream.getCost_time() + "ms"
+                    + " rmse=" + analysis.getRMSE()
+                    + String.format(" throughput=%.3e points/s", stream.getThroughput())
+                    + " max latency=" + stream.getMaxLatency() / 1000 + "us");
+        }
+    }
+
+    public static void main_load(String dataPath, int dataLen) throws Exception { // loader throughput in MB/s
+        for (int round = 0; round < 3; ++round) {
+            MappedCsvReader reader = new MappedCsvReader();
+            long startTime = System.nanoTime();
+            reader.read(dataPath, dataLen);
+            double mapped = (System.nanoTime() - startTime) / 1e9;
+            double mb = reader.getBytesRead() / 1e6;
+
+            LoadData loadData = new LoadData(dataPath, dataLen);
+            double[] td_clean = loadData.getTd_clean();
+            startTime = System.nanoTime();
+            loadData.loadTimeSeriesDataScanner(dataPath);
+            double scanner = (System.nanoTime() - startTime) / 1e9;
+
+            System.out.println(String.format("%.1fMB mapped: %.1fMB/s scanner: %.1fMB/s identical: %b",
+                    mb, mb / mapped, mb / scanner, Arrays.equals(td_clean, loadData.getTd_clean())));
+        }
+        // chunked parallel parse per thread count
+        MappedCsvReader base = new MappedCsvReader();
+        base.read(dataPath, dataLen);
+        for (int parallelism : new int[]{1, 2, 4, 8, 16}) {
+            MappedCsvReader reader = new MappedCsvReader();
+            long startTime = System.nanoTime();
+            reader.read(dataPath, dataLen, parallelism);
+            double cost = (System.nanoTime() - startTime) / 1e9;
+            System.out.println(String.format("threads: %d %.1fMB/s identical: %b", parallelism,
+                    reader.getBytesRead() / 1e6 / cost,
+                    Arrays.equals(base.getTd_value(), reader.getTd_value()) && Arrays.equals(base.getTd_time(), reader.getTd_time())));
+        }
+    }
+
+    public static void main_series(String dataPath, int dataLen) throws Exception { // csv against the binary formats
+        String[] names = {dataPath, dataPath + ".raw" + SeriesFile.SUFFIX, dataPath + SeriesFile.SUFFIX};
+        SeriesFile.convert(dataPath, names[1], SeriesFile.RAW);
+        SeriesFile.convert(dataPath, names[2], SeriesFile.COMPRESSED);
+        double[] base = new LoadData(dataPath, dataLen).getTd_clean();
+        for (String name : names) {
+            double cost = Double.MAX_VALUE;
+            boolean identical = false;
+            for (int round = 0; round < 5; ++round) {
+                long startTime = System.nanoTime();
+                LoadData loadData = new LoadData(name, dataLen);
+                cost = Math.min(cost, (System.nanoTime() - startTime) / 1e6);
+                identical = Arrays.equals(base, loadData.getTd_clean());
+            }
+            System.out.println(String.format("%s: %d bytes %.2fms identical: %b", name, new File(name).length(), cost, identical));
+        }
+    }
+
+    public static void main_chunk(String dataPath, int blockSize, int overlap, int numWorkers) throws Exception { // constant memory reads
+        MappedCsvReader reader = new MappedCsvReader();
+        reader.read(dataPath, Integer.MAX_VALUE);
+        double expect = 0;
+        for (double v : reader.getTd_value()) expect += v;
+
+        long startTime = System.nanoTime();
+        long rows = 0, blocks = 0;
+        double sum = 0;
+        try (ChunkedLoader loader = new ChunkedLoader(dataPath, blockSize, overlap)) {
+            while (loader.hasNext()) {
+                try (ChunkedLoader.Block block = loader.next()) {
+                    double[] td_value = block.getTd_value();
+                    for (int i = block.getOverlap(); i < block.getSize(); ++i) sum += td_value[i];
+                    rows += block.getSize() - block.getOverlap();
+                    blocks++;
+                }
+            }
+        }
+        double cost = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("sequential: %d rows %d blocks %.1fMB/s identical: %b",
+                rows, blocks, new File(dataPath).length() / 1e6 / cost, rows == reader.getSize() && sum == expect));
+
+        // disjoint byte ranges, one reader per worker
+        long[] offsets = ChunkedLoader.split(dataPath, numWorkers);
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        startTime = System.nanoTime();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int w = 0; w < numWorkers; ++w) {
+            long from = offsets[w], to = offsets[w + 1];
+            futures.add(pool.submit(() -> {
+                long count = 0;
+                try (ChunkedLoader loader = new ChunkedLoader(dataPath, blockSize, 0, from, to)) {
+                    while (loader.hasNext()) {
+                        try (ChunkedLoader.Block block = loader.next()) {
+                            count += block.getSize();
+                        }
+                    }
+                }
+                return count;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> future : futures) total += future.get();
+        cost = (System.nanoTime() - startTime) / 1e9;
+        pool.shutdown();
+        System.out.println(String.format("%d workers: %d rows %.1fMB/s", numWorkers, total, new File(dataPath).length() / 1e6 / cost));
+    }
+
+    public static void main_noise(int n, int parallelism) throws Exception { // noise injection throughput
+        double[] td_clean = new double[n];
+        for (int i = 0; i < n; ++i)
+            td_clean[i] = 0.5 + 0.5 * Math.sin(2 * Math.PI * i / 144);
+        // the defaults of reset(), which this entry point does not run
+        double rate = 5.0, range = 2.0;
+        int length = 25;
+
+        long startTime = System.nanoTime();
+        double[] td_dirty = new AddNoise(td_clean, rate, range, length, seed).getTd_dirty();
+        System.out.println(String.format("AddNoise: %.1fms", (System.nanoTime() - startTime) / 1e6));
+
+        NoiseModel[] models = {
+                NoiseModel.segment(rate, range, length),
+                NoiseModel.spike(rate / 5, range),
+                NoiseModel.levelShift(rate / 5, range, length),
+                NoiseModel.drift(rate / 5, range, length),
+                NoiseModel.missing(rate / 10, length),
+        };
+        double[] base = new NoiseInjector(seed, 1, models).inject(td_clean);
+        for (int threads = 1; threads <= parallelism; threads *= 2) {
+            startTime = System.nanoTime();
+            td_dirty = new NoiseInjector(seed, threads, models).inject(td_clean);
+            System.out.println(String.format("NoiseInjector threads: %d %.1fms identical: %b",
+                    threads, (System.nanoTime() - startTime) / 1e6, Arrays.equals(base, td_dirty)));
+        }
+    }
+
+    public static void main_label(int n) throws Exception { // label masks against HashSet + boolean[]
+        double[] td_clean = new double[n], td_repair = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_clean[i] = Math.sin(2 * Math.PI * i / 144);
+            td_repair[i] = td_clean[i] + (i % 7) * 1e-3;
+        }
+        for (double rate : new double[]{0.01, 0.05, 0.1, 0.25, 0.5}) {
+            int m = (int) (n * rate);
+            // the former selectM: int[n] shuffle prefix into a HashSet, then a boolean[]
+            long startTime = System.nanoTime();
+            Random r = new Random(seed);
+            int[] idx = new int[n];
+            for (int j = 0; j < n; idx[j] = j, j++) ;
+            HashSet<Integer> hs = new HashSet<>(List.of(0, 1, 2));
+            for (int i = 0, tmp, randomIndex; i < m; i++) {
+                randomIndex = n - 1 - r.nextInt(n - i);
+                tmp = idx[randomIndex];
+                hs.add(tmp);
+                idx[randomIndex] = idx[i];
+                idx[i] = tmp;
+            }
+            boolean[] td_bool = new boolean[n];
+            for (int i = 0; i < n; i++) td_bool[i] = hs.contains(i);
+            double oldSample = (System.nanoTime() - startTime) / 1e6;
+            long oldBytes = 4L * n + n + 48L * hs.size(); // idx, td_bool and ~48 bytes per boxed HashSet entry
+
+            startTime = System.nanoTime();
+            LabelMask mask = LabelMask.sample(n, m, seed);
+            double newSample = (System.nanoTime() - startTime) / 1e6;
+
+            startTime = System.nanoTime();
+            String rmseBool = new Analysis(null, td_clean, td_repair, td_bool, 0).getRMSE();
+            double boolScan = (System.nanoTime() - startTime) / 1e6;
+            startTime = System.nanoTime();
+            String rmseMask = new Analysis(null, td_clean, td_repair, mask, 0).getRMSE();
+            double maskScan = (System.nanoTime() - startTime) / 1e6;
+
+            System.out.println(String.format("rate %.2f: sample %.1fms -> %.1fms, memory %dKB -> %dKB (%s), analysis %.1fms -> %.1fms (%s %s)",
+                    rate, oldSample, newSample, oldBytes >> 10, mask.memoryBytes() >> 10, mask.isSparse() ? "sparse" : "dense",
+                    boolScan, maskScan, rmseBool, rmseMask));
+        }
+    }
+
+    public static void main_write(String outputPath, int n) throws Exception { // writer throughput in MB/s
+        long[] td_time = new long[n];
+        double[] td_clean = new double[n];
+        for (int i = 0; i < n; ++i) {
+            td_time[i] = 1564588800000L + i * 300000L;
+            td_clean[i] = 0.5 + 0.5 * Math.sin(2 * Math.PI * i / 144);
+        }
+        // a real repair, so the values carry all 17 significant digits
+        double[] td_dirty = new AddNoise(td_clean, 5.0, 2.0, 25, seed).getTd_dirty();
+        double[] td_repair = new EWMA(td_time, td_dirty).getTd_repair();
+
+        long startTime = System.nanoTime();
+        BufferedWriter writeText = new BufferedWriter(new FileWriter(outputPath));
+        writeText.write("timestamp,value");
+        for (int j = 0; j < n; j++) {
+            writeText.newLine();
+            writeText.write(td_time[j] + "," + td_repair[j]);
+        }
+        writeText.close();
+        report("BufferedWriter", new File(outputPath).length(), startTime);
+
+        SeriesWriter writer = new SeriesWriter();
+        startTime = System.nanoTime();
+        report("SeriesWriter csv", writer.writeCsv(outputPath, td_time, td_repair), startTime);
+        startTime = System.nanoTime();
+        report("SeriesWriter changed", writer.writeCsv(outputPath, td_time, td_repair, td_dirty), startTime);
+        startTime = System.nanoTime();
+        report("SeriesWriter raw", writer.writeBinary(outputPath, td_time, td_repair, SeriesFile.RAW), startTime);
+        startTime = System.nanoTime();
+        report("SeriesWriter compressed", writer.writeBinary(outputPath, td_time, td_repair, SeriesFile.COMPRESSED), startTime);
+    }
+
+    private static void report(String name, long bytes, long startTime) {
+        double cost = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("%s: %.1fMB %.2fs %.1fMB/s", name, bytes / 1e6, cost, bytes / 1e6 / cost));
+    }
+
+    public static void main_profile(String dataPath, int dataLen, int period) throws Exception { // time and allocation per phase
+        LoadData loadData = new LoadData(dataPath, dataLen);
+        long[] td_time = loadData.getTd_time();
+        double[] td_clean = loadData.getTd_clean();
+        double[] td_dirty = new AddNoise(td_clean, 5.0, 2.0, 25, seed).getTd_dirty();
+        LabelData labelData = new LabelData(td_clean, td_dirty, 0.5, seed);
+
+        for (String name : new String[]{"SRD", "SCREEN", "Lsgreedy", "IMR", "EWMA"}) {
+            try (Profile profile = Profile.start()) {
+                switch (name) {
+                    case "SRD" -> new SRD(td_time, td_dirty, period, 6.0, 5);
+                    case "SCREEN" -> new SCREEN(td_time, td_dirty);
+                    case "Lsgreedy" -> new Lsgreedy(td_time, td_dirty);
+                    case "IMR" -> new IMR(td_time, td_dirty, labelData.getTd_label(), labelData.getLabelMask());
+                    default -> new EWMA(td_time, td_dirty);
+                }
+                System.out.print(name + "\n" + profile);
+            }
+        }
+    }
+
+    public static void main_pipeline(String dataPath, int dataLen, int period) throws Exception { // Repair on caller buffers
+        LoadData loadData = new LoadData(dataPath, dataLen);
+        long[] td_time = loadData.getTd_time();
+        double[] td_clean = loadData.getTd_clean();
+        double[] td_dirty = new AddNoise(td_clean, 5.0, 2.0, 25, seed).getTd_dirty();
+        LabelData labelData = new LabelData(td_clean, td_dirty, 0.5, seed);
+        boolean[] default_bool = new boolean[td_dirty.length];
+
+        Repair[] repairs = {
+                Repair.srd(period, 6.0, 5), Repair.screen(), Repair.lsgreedy(), Repair.ewma(0.2),
+                Repair.imr(labelData.getTd_label(), labelData.getLabelMask()),
+                Repair.pipeline(Repair.srd(period, 6.0, 5), Repair.residual(period, Repair.screen())),
+        };
+        double[][] legacy = {
+                new SRD(td_time, td_dirty, period, 6.0, 5).getTd_repair(),
+                new SCREEN(td_time, td_dirty).getTd_repair(),
+                new Lsgreedy(td_time, td_dirty).getTd_repair(),
+                new EWMA(td_time, td_dirty).getTd_repair(),
+                new IMR(td_time, td_dirty, labelData.getTd_label(), labelData.getLabelMask()).getTd_repair(),
+                null,
+        };
+        double[] td_repair = new double[td_dirty.length], td_inplace = new double[td_dirty.length];
+        for (int r = 0; r < repairs.length; ++r) {
+            long allocated = Profile.allocatedBytes();
+            long startTime = System.nanoTime();
+            int iterations = repairs[r].repair(td_time, td_dirty, td_repair);
+            double cost = (System.nanoTime() - startTime) / 1e6;
+            allocated = allocated < 0 ? -1 : Profile.allocatedBytes() - allocated;
+
+            System.arraycopy(td_dirty, 0, td_inplace, 0, td_dirty.length);
+            repairs[r].repair(td_time, td_inplace, td_inplace);
+            boolean identical = Arrays.equals(td_repair, td_inplace) && (legacy[r] == null || Arrays.equals(td_repair, legacy[r]));
+            double rmse = new Analysis(td_time, td_clean, td_repair, default_bool, 0).getAccumulator().getRMSE();
+            System.out.println(String.format("%s: rmse %.4f, %d iterations, %.1fms, %.1fMB allocated, identical: %b",
+                    repairs[r].getName(), rmse, iterations, cost, allocated / 1e6, identical));
+        }
+    }
+
     public static void main(String[] args) throws Exception {
+        if (args.length > 0) { // a config file, see experiment.properties
+            ExperimentRunner.main(args);
+            return;
+        }
         if (INPUT_DIR == "")
             throw new Exception("The location of the dataset needs to be specified.");
-        main_cmp();
+        // -Dmetrics.port=9404 serves the repair metrics while the experiment runs
+        String metricsPort = System.getProperty("metrics.port");
+        if (metricsPort == null) {
+            main_cmp();
+            return;
+        }
+        try (MetricsServer server = new MetricsServer(Integer.parseInt(metricsPort))) {
+            System.out.println("metrics at http://127.0.0.1:" + server.getPort() + "/metrics");
+            main_cmp();
+        }
     }
 }
@@ -0,0 +1,359 @@
+import Algorithm.util.ErrorAccumulator;
+import Algorithm.util.MetricsRegistry;
+import Algorithm.util.Profile;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the repair experiments described by a properties file, see experiment.properties. Every
+ * combination of the listed values of the grid keys is a unit: one algorithm on one noisy slice
+ * of one dataset. Any key can be overridden per dataset with key.name, name being the file name
+ * up to the first '_', as Experiment names its datasets.
+ * <p>
+ * Units run on a pool of workers, in this JVM or each in its own (fork=true), so that the timing
+ * of one unit is not disturbed by the JIT and GC state left by others. In this JVM the timings of
+ * concurrent units are contended, they are comparable only with workers=1. Every result is appended to
+ * the output through a ResultSink as it completes, csv or JSON lines for a .jsonl output, and then
+ * checkpointed in output.done; a restart skips the checkpointed units. In this JVM, units of the
+ * same slice share its data, which is dropped after the last of them.
+ */
+public class ExperimentRunner {
+    private static final String[] GRID = {"dataLen", "error.rate", "error.range", "error.length"};
+    private static final String[] COLUMNS = {"dataset", "dataLen", "error_rate", "error_range", "error_length",
+            "algorithm", "repeat", "rmse", "mae", "mape", "cost_ms", "wall_ms", "alloc_bytes"};
+    private static final String RESULT = "RESULT ";
+
+    private final Properties config;
+    private final String inputDir;
+    private final int workers;
+    private final boolean fork;
+
+    private final ConcurrentHashMap<String, CompletableFuture<DatasetCache>> datasets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Slice>> slices = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public ExperimentRunner(Properties config) {
+        this.config = config;
+        this.inputDir = config.getProperty("input.dir", "");
+        this.workers = Integer.parseInt(config.getProperty("workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.fork = Boolean.parseBoolean(config.getProperty("fork", "false"));
+        MetricsRegistry.global().gauge("seasonal_runner_pending_units", "Units queued or running", pending::get);
+    }
+
+    /**
+     * one algorithm on one slice
+     */
+    private static final class Unit {
+        final String file, name, algorithm;
+        final int period, dataLen, errorLength, repeat;
+        final double errorRate, errorRange;
+
+        Unit(String file, String name, int period, int dataLen, double errorRate, double errorRange, int errorLength,
+             String algorithm, int repeat) {
+            this.file = file;
+            this.name = name;
+            this.period = period;
+            this.dataLen = dataLen;
+            this.errorRate = errorRate;
+            this.errorRange = errorRange;
+            this.errorLength = errorLength;
+            this.algorithm = algorithm;
+            this.repeat = repeat;
+        }
+
+        String key() {
+            return file + "," + dataLen + "," + errorRate + "," + errorRange + "," + errorLength + "," + algorithm + "," + repeat;
+        }
+
+        String sliceKey() {
+            return file + "," + dataLen + "," + errorRate + "," + errorRange + "," + errorLength;
+        }
+
+        String toCsv() {
+            return name + "," + dataLen + "," + errorRate + "," + errorRange + "," + errorLength + "," + algorithm + "," + repeat;
+        }
+    }
+
+    /**
+     * the inputs every algorithm of a slice repairs
+     */
+    private static final class Slice {
+        final long[] td_time;
+        final double[] td_clean, td_dirty, td_label;
+        final boolean[] td_bool, default_bool;
+        final AtomicInteger remaining;
+
+        Slice(long[] td_time, double[] td_clean, double[] td_dirty, LabelData labelData, int units) {
+            this.td_time = td_time;
+            this.td_clean = td_clean;
+            this.td_dirty = td_dirty;
+            this.td_label = labelData.getTd_label();
+            this.td_bool = labelData.getTd_bool();
+            this.default_bool = new boolean[td_clean.length];
+            this.remaining = new AtomicInteger(units);
+        }
+    }
+
+    private String get(String key, String name) {
+        String value = config.getProperty(key + "." + name, config.getProperty(key));
+        if (value == null)
+            throw new IllegalArgumentException("Missing " + key);
+        return value.trim();
+    }
+
+    private String[] list(String key, String name) {
+        String[] values = get(key, name).split(",");
+        for (int i = 0; i < values.length; ++i)
+            values[i] = values[i].trim();
+        return values;
+    }
+
+    /**
+     * the grid, the algorithms of a slice are adjacent so that the slice is short-lived
+     */
+    List<Unit> expand() {
+        List<Unit> units = new ArrayList<>();
+        for (String file : list("datasets", "")) {
+            String name = file.split("_")[0];
+            int period = Integer.parseInt(get("period", name));
+            int repeat = Integer.parseInt(config.getProperty("repeat", "1"));
+            String[][] grid = new String[GRID.length][];
+            for (int g = 0; g < GRID.length; ++g)
+                grid[g] = list(GRID[g], name);
+            int[] idx = new int[GRID.length];
+            do {
+                for (int r = 0; r < repeat; ++r)
+                    for (String algorithm : list("algorithms", name))
+                        units.add(new Unit(file, name, period, Integer.parseInt(grid[0][idx[0]]),
+                                Double.parseDouble(grid[1][idx[1]]), Double.parseDouble(grid[2][idx[2]]),
+                                Integer.parseInt(grid[3][idx[3]]), algorithm, r));
+            } while (next(idx, grid));
+        }
+        return units;
+    }
+
+    private static boolean next(int[] idx, String[][] grid) {
+        for (int g = idx.length - 1; g >= 0; --g) {
+            if (++idx[g] < grid[g].length)
+                return true;
+            idx[g] = 0;
+        }
+        return false;
+    }
+
+    public void run() throws Exception {
+        String output = config.getProperty("output", "results.csv");
+        try (Checkpoint checkpoint = new Checkpoint(output + ".done")) {
+            run(output, checkpoint);
+        }
+    }
+
+    /**
+     * skips the units finished by previous runs, a unit is checkpointed once its result is on disk
+     */
+    private void run(String output, Checkpoint checkpoint) throws Exception {
+        List<Unit> units = expand();
+        int total = units.size();
+        units.removeIf(unit -> checkpoint.contains(unit.key()));
+        System.out.println(units.size() + " units on " + workers + (fork ? " forked" : "") + " workers -> " + output
+                + (units.size() < total ? ", " + (total - units.size()) + " finished before" : ""));
+
+        // the largest slice of every dataset is loaded once
+        Map<String, Integer> maxLen = new HashMap<>();
+        for (Unit unit : units)
+            maxLen.merge(unit.file, unit.dataLen, Math::max);
+        Map<String, Integer> perSlice = new HashMap<>();
+        for (Unit unit : units)
+            perSlice.merge(unit.sliceKey(), 1, Integer::sum);
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        int failed = 0;
+        try (ResultSink results = new ResultSink(output, COLUMNS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            pending.set(units.size());
+            AtomicInteger done = new AtomicInteger();
+            for (Unit unit : units) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        String result = fork ? runForked(unit) : runLocal(unit, maxLen.get(unit.file), perSlice.get(unit.sliceKey()));
+                        results.write(record(unit, result));
+                        results.flush();
+                        checkpoint.add(unit.key());
+                        System.out.println("[" + done.incrementAndGet() + "/" + units.size() + "] " + unit.toCsv() + " " + result);
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            // a failed unit does not stop the others, it runs again on the next start
+            for (int i = 0; i < futures.size(); ++i) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println(units.get(i).toCsv() + " failed: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("done in " + (System.currentTimeMillis() - startTime) + "ms");
+        if (failed > 0)
+            throw new IOException(failed + " units failed, run again to retry them");
+    }
+
+    private static <T> CompletableFuture<T> once(ConcurrentHashMap<String, CompletableFuture<T>> map, String key,
+                                                 Loader<T> loader) {
+        CompletableFuture<T> future = new CompletableFuture<>(), previous = map.putIfAbsent(key, future);
+        if (previous != null)
+            return previous;
+        try {
+            future.complete(loader.load());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    /**
+     * the columns of a unit and its result
+     */
+    private static Object[] record(Unit unit, String result) {
+        String[] metrics = result.split(",");
+        return new Object[]{unit.name, unit.dataLen, unit.errorRate, unit.errorRange, unit.errorLength, unit.algorithm,
+                unit.repeat, Double.parseDouble(metrics[0]), Double.parseDouble(metrics[1]), Double.parseDouble(metrics[2]),
+                Long.parseLong(metrics[3]), Long.parseLong(metrics[4]), Long.parseLong(metrics[5])};
+    }
+
+    /**
+     * rmse,mae,mape,cost_ms,wall_ms,alloc_bytes
+     */
+    private String runLocal(Unit unit, int maxLen, int unitsOfSlice) throws Exception {
+        DatasetCache cache = once(datasets, unit.file, () -> new DatasetCache(inputDir + unit.file, maxLen)).join();
+        Slice slice = once(slices, unit.sliceKey(), () -> {
+            // DatasetCache is not thread-safe
+            synchronized (cache) {
+                int seed = Integer.parseInt(config.getProperty("seed", "666"));
+                long[] td_time = cache.getTd_time(unit.dataLen);
+                double[] td_clean = cache.getTd_clean(unit.dataLen);
+                double[] td_dirty = cache.getTd_dirty(td_clean, unit.errorRate, unit.errorRange, unit.errorLength, seed);
+                LabelData labelData = new LabelData(td_clean, td_dirty, Double.parseDouble(get("label.rate", unit.name)), seed);
+                return new Slice(td_time, td_clean, td_dirty, labelData, unitsOfSlice);
+            }
+        }).join();
+        try {
+            return repair(unit, slice);
+        } finally {
+            if (slice.remaining.decrementAndGet() == 0)
+                slices.remove(unit.sliceKey());
+        }
+    }
+
+    private String repair(Unit unit, Slice s) throws Exception {
+        double k = Double.parseDouble(get("k", unit.name));
+        int max_iter = Integer.parseInt(get("max_iter", unit.name));
+        long allocated = Profile.allocatedBytes();
+        long startTime = System.currentTimeMillis();
+        Analysis analysis = switch (unit.algorithm) {
+            case "SRD" -> Experiment.srdRepair(s.td_time, s.td_clean, s.td_dirty, unit.period, k, max_iter, s.default_bool);
+            case "SCREEN" -> Experiment.screenRepair(s.td_time, s.td_clean, s.td_dirty, s.default_bool);
+            case "Lsgreedy" -> Experiment.lsgreedyRepair(s.td_time, s.td_clean, s.td_dirty, s.default_bool);
+            case "IMR" -> Experiment.imrRepair(s.td_time, s.td_clean, s.td_dirty, s.td_label, s.td_bool);
+            case "EWMA" -> Experiment.ewmaRepair(s.td_time, s.td_clean, s.td_dirty, s.default_bool);
+            default -> throw new IllegalArgumentException("Unknown algorithm " + unit.algorithm);
+        };
+        long wall = System.currentTimeMillis() - startTime;
+        allocated = allocated < 0 ? -1 : Profile.allocatedBytes() - allocated;
+        ErrorAccumulator acc = analysis.getAccumulator();
+        return acc.getRMSE() + "," + acc.getMAE() + "," + acc.getMAPE() + ","
+                + analysis.getCost_time() + "," + wall + "," + allocated;
+    }
+
+    /**
+     * the unit in a fresh JVM, which prints its result on a line starting with RESULT
+     */
+    private String runForked(Unit unit) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        String jvmArgs = config.getProperty("fork.jvmArgs", "").trim();
+        if (!jvmArgs.isEmpty())
+            command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ExperimentRunner.class.getName(), "--unit"));
+        for (String key : config.stringPropertyNames())
+            command.add(key + "=" + config.getProperty(key));
+        // per dataset keys, so that they win over the dataset overrides of the file
+        String n = "." + unit.name;
+        command.addAll(List.of("datasets=" + unit.file, "repeat=1", "algorithms" + n + "=" + unit.algorithm,
+                "dataLen" + n + "=" + unit.dataLen, "error.rate" + n + "=" + unit.errorRate,
+                "error.range" + n + "=" + unit.errorRange, "error.length" + n + "=" + unit.errorLength));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        ArrayDeque<String> tail = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.startsWith(RESULT))
+                    result = line.substring(RESULT.length());
+                if (tail.size() == 20)
+                    tail.removeFirst();
+                tail.addLast(line);
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0 || result == null)
+            throw new IOException("Unit " + unit.toCsv() + " exited with " + exit + ":\n" + String.join("\n", tail));
+        return result;
+    }
+
+    /**
+     * ExperimentRunner <config.properties> [key=value ...], the pairs override the file
+     */
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        boolean unit = args.length > 0 && args[0].equals("--unit");
+        int from = unit ? 1 : 0;
+        if (!unit) {
+            try (FileReader reader = new FileReader(args[0])) {
+                config.load(reader);
+            }
+            from = 1;
+        }
+        for (int i = from; i < args.length; ++i) {
+            int eq = args[i].indexOf('=');
+            config.setProperty(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+
+        ExperimentRunner runner = new ExperimentRunner(config);
+        if (unit) { // forked: the overrides leave exactly one unit
+            Unit u = runner.expand().get(0);
+            System.out.println(RESULT + runner.runLocal(u, u.dataLen, 1));
+            return;
+        }
+        runner.run();
+    }
+}
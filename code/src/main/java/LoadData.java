@@ -1,20 +1,24 @@
 import java.io.*;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class LoadData {
-    private final ArrayList<Double> td_clean = new ArrayList<>();
-    private final ArrayList<Long> td_time = new ArrayList<>();
+    // threads of the csv parser
+    private static final int PARALLELISM = Integer.getInteger("load.parallelism", Runtime.getRuntime().availableProcessors());
+
+    private long[] td_time;
+    private double[] td_clean;
 
     private final int dataLen;
     private double max_v, min_v;
 
-    public LoadData(String dataPath, int dataLen) throws FileNotFoundException {
+    public LoadData(String dataPath, int dataLen) throws IOException {
         this.dataLen = dataLen;
 
         this.loadTimeSeriesData(dataPath);
     }
 
-    public LoadData(String dataPath, int dataLen, double max_v, double min_v) throws FileNotFoundException {
+    public LoadData(String dataPath, int dataLen, double max_v, double min_v) throws IOException {
         this.dataLen = dataLen;
         this.max_v = max_v;
         this.min_v = min_v;
@@ -22,7 +26,53 @@ public class LoadData {
         this.loadTimeSeriesDataWithRange(dataPath);
     }
 
-    public void loadTimeSeriesData(String filename) throws FileNotFoundException {
+    public void loadTimeSeriesData(String filename) throws IOException {
+        if (SeriesFile.isSeriesFile(filename)) {
+            SeriesFile series = new SeriesFile(filename);
+            series.read(dataLen);
+            this.td_time = series.getTd_time();
+            this.td_clean = series.getTd_value();
+            this.max_v = series.getMax_v();
+            this.min_v = series.getMin_v();
+        } else {
+            MappedCsvReader reader = new MappedCsvReader();
+            reader.read(filename, dataLen, PARALLELISM);
+            this.td_time = reader.getTd_time();
+            this.td_clean = reader.getTd_value();
+            this.max_v = reader.getMax_v();
+            this.min_v = reader.getMin_v();
+        }
+        // standardize
+        double[] td_clean = this.td_clean;
+        double max_v = this.max_v, min_v = this.min_v;
+        IntStream.range(0, td_clean.length).parallel()
+                .forEach(i -> td_clean[i] = (td_clean[i] - min_v) / (max_v - min_v));
+    }
+
+    public void loadTimeSeriesDataWithRange(String filename) throws IOException {
+        System.out.println(filename);
+        if (SeriesFile.isSeriesFile(filename)) {
+            SeriesFile series = new SeriesFile(filename);
+            series.read(dataLen);
+            this.td_time = series.getTd_time();
+            this.td_clean = series.getTd_value();
+            for (int i = 0; i < td_clean.length; ++i)
+                td_clean[i] = (td_clean[i] - min_v) / (max_v - min_v);
+            return;
+        }
+        // standardize while parsing
+        MappedCsvReader reader = new MappedCsvReader(max_v, min_v);
+        reader.read(filename, dataLen, PARALLELISM);
+        this.td_time = reader.getTd_time();
+        this.td_clean = reader.getTd_value();
+    }
+
+    /**
+     * the former Scanner based loader, kept as the baseline of Experiment.main_load
+     */
+    public void loadTimeSeriesDataScanner(String filename) throws FileNotFoundException {
+        ArrayList<Double> td_clean = new ArrayList<>();
+        ArrayList<Long> td_time = new ArrayList<>();
         Scanner sc = new Scanner(new File(filename));
 
         max_v = Double.MIN_VALUE;
@@ -33,10 +83,10 @@ public class LoadData {
             String[] line_str = sc.nextLine().split(",");
             // td_time
             long t = Long.parseLong(line_str[0]);
-            this.td_time.add(t);
+            td_time.add(t);
             // td_clean
             double v = Double.parseDouble(line_str[1]);
-            this.td_clean.add(v);
+            td_clean.add(v);
             // standardize_prepare
             if (v > max_v) max_v = v;
             if (v < min_v) min_v = v;
@@ -44,40 +94,21 @@ public class LoadData {
         // standardize
         for (int i = 0; i < td_clean.size(); ++i)
             td_clean.set(i, (td_clean.get(i) - min_v) / (max_v - min_v));
-    }
 
-    public void loadTimeSeriesDataWithRange(String filename) throws FileNotFoundException {
-        Scanner sc = new Scanner(new File(filename));
-
-        sc.nextLine();  // skip table header
-        System.out.println(filename);
-        for (int k = dataLen; k > 0 && sc.hasNextLine(); --k) {  // the size of td_clean is dataLen
-            String[] line_str = sc.nextLine().split(",");
-            // td_time
-            long t = Long.parseLong(line_str[0]);
-            this.td_time.add(t);
-            // td_clean
-            double v = Double.parseDouble(line_str[1]);
-            this.td_clean.add(v);
-            // standardize_prepare
-        }
-        // standardize
+        this.td_clean = new double[td_clean.size()];
         for (int i = 0; i < td_clean.size(); ++i)
-            td_clean.set(i, (td_clean.get(i) - min_v) / (max_v - min_v));
+            this.td_clean[i] = td_clean.get(i);
+        this.td_time = new long[td_time.size()];
+        for (int i = 0; i < td_time.size(); ++i)
+            this.td_time[i] = td_time.get(i);
     }
 
     public double[] getTd_clean() {
-        double[] rtn = new double[td_clean.size()];
-        for (int i = 0; i < td_clean.size(); ++i)
-            rtn[i] = td_clean.get(i);
-        return rtn;
+        return td_clean;
     }
 
     public long[] getTd_time() {
-        long[] rtn = new long[td_time.size()];
-        for (int i = 0; i < td_time.size(); ++i)
-            rtn[i] = td_time.get(i);
-        return rtn;
+        return td_time;
     }
 
     public double getMax_v() {
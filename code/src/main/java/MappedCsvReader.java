@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Reads "timestamp,value[,...]" csv files through memory-mapped windows and parses the numbers
+ * straight from the bytes into primitive arrays. Extra columns are skipped.
+ * <p>
+ * The parallel mode splits the file into chunks at line boundaries. It first counts the rows of
+ * every chunk, then parses all chunks concurrently straight into their slice of the final arrays.
+ */
+public class MappedCsvReader {
+    private static final long WINDOW = 1L << 30;
+    private static final long MIN_CHUNK = 1L << 20;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private long[] td_time;
+    private double[] td_value;
+    private int size;
+    private double max_v = Double.NEGATIVE_INFINITY, min_v = Double.POSITIVE_INFINITY;
+    private long bytesRead;
+    private double[] range; // {min, max} of the sequential read
+
+    // fused normalisation, only when the range is known up front
+    private final boolean normalize;
+    private final double norm_max, norm_min;
+
+    public MappedCsvReader() {
+        this.normalize = false;
+        this.norm_max = 0;
+        this.norm_min = 0;
+    }
+
+    /**
+     * normalise every value with the given range while parsing
+     */
+    public MappedCsvReader(double max_v, double min_v) {
+        this.normalize = true;
+        this.norm_max = max_v;
+        this.norm_min = min_v;
+    }
+
+    /**
+     * read at most dataLen rows after the header
+     */
+    public void read(String filename, int dataLen) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            // at least 4 bytes per row, e.g. "1,2\n"
+            int cap = (int) Math.max(16, Math.min(dataLen, Math.min(fileSize / 4 + 1, Integer.MAX_VALUE - 8)));
+            td_time = new long[cap];
+            td_value = new double[cap];
+            size = 0;
+            range = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+            long offset = 0;
+            boolean header = true;
+            while (offset < fileSize && size < dataLen) {
+                long len = Math.min(WINDOW, fileSize - offset);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+                boolean last = offset + len == fileSize;
+                int pos = 0, limit = (int) len;
+
+                if (header) {
+                    while (pos < limit && buf.get(pos) != '\n') pos++;
+                    if (pos == limit && !last)
+                        throw new IOException("Header exceeds the mapping window");
+                    pos++;
+                    header = false;
+                }
+
+                while (pos < limit && size < dataLen) {
+                    int end = pos;
+                    while (end < limit && buf.get(end) != '\n') end++;
+                    if (end == limit && !last)
+                        break; // the line continues in the next window
+                    parseLine(buf, pos, end);
+                    pos = end + 1;
+                }
+                offset += Math.min(pos, limit);
+                if (last)
+                    break;
+            }
+            bytesRead = offset;
+        }
+        min_v = range[0];
+        max_v = range[1];
+        if (size < td_time.length) {
+            td_time = Arrays.copyOf(td_time, size);
+            td_value = Arrays.copyOf(td_value, size);
+        }
+    }
+
+    private void parseLine(MappedByteBuffer buf, int start, int end) {
+        if (size == td_time.length) {
+            int cap = td_time.length + (td_time.length >> 1) + 16;
+            td_time = Arrays.copyOf(td_time, cap);
+            td_value = Arrays.copyOf(td_value, cap);
+        }
+        size += parseLine(buf, start, end, td_time, td_value, size, range);
+    }
+
+    /**
+     * parse one line into time[idx] and value[idx], range = {min, max} of the raw values
+     *
+     * @return 1 if a row was parsed, 0 for a blank line
+     */
+    private int parseLine(ByteBuffer buf, int start, int end, long[] time, double[] value, int idx, double[] range) {
+        if (end > start && buf.get(end - 1) == '\r') end--;
+        if (end <= start) return 0; // blank line
+
+        int comma = start;
+        while (comma < end && buf.get(comma) != ',') comma++;
+        int valueEnd = comma + 1;
+        while (valueEnd < end && buf.get(valueEnd) != ',') valueEnd++;
+
+        double v;
+        try {
+            v = parseDouble(buf, comma + 1, valueEnd);
+            time[idx] = parseLong(buf, start, comma);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Data row " + idx + ": " + e.getMessage());
+        }
+        if (v < range[0]) range[0] = v;
+        if (v > range[1]) range[1] = v;
+        value[idx] = normalize ? (v - norm_min) / (norm_max - norm_min) : v;
+        return 1;
+    }
+
+    /**
+     * read at most dataLen rows after the header with the given number of threads
+     */
+    public void read(String filename, int dataLen, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long dataStart = lineEnd(channel, 0, fileSize);
+            int chunkNum = (int) Math.min((fileSize - dataStart) / MIN_CHUNK + 1,
+                    Math.max(parallelism * 4L, fileSize / WINDOW + 1));
+            if (parallelism <= 1 || chunkNum <= 1) {
+                read(filename, dataLen);
+                return;
+            }
+
+            // chunk c is [bounds[c], bounds[c + 1]), every bound is a line start
+            long[] bounds = new long[chunkNum + 1];
+            bounds[0] = dataStart;
+            bounds[chunkNum] = fileSize;
+            for (int c = 1; c < chunkNum; ++c) {
+                long guess = dataStart + (fileSize - dataStart) * c / chunkNum;
+                bounds[c] = Math.max(bounds[c - 1], lineEnd(channel, Math.max(guess - 1, dataStart), fileSize));
+            }
+            MappedByteBuffer[] bufs = new MappedByteBuffer[chunkNum];
+            int[] offsets = new int[chunkNum + 1];
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                // pass 1: rows per chunk and the offset of every chunk in the result, counted in
+                // waves of parallelism chunks so that a short prefix does not touch the whole file
+                int used = 0;
+                while (used < chunkNum && offsets[used] < dataLen) {
+                    int from = used, to = Math.min(chunkNum, used + parallelism);
+                    for (int c = from; c < to; ++c)
+                        bufs[c] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c]);
+                    int[] counts = pool.submit(() -> IntStream.range(from, to).parallel()
+                            .map(c -> countRows(bufs[c])).toArray()).get();
+                    for (int c = from; c < to; ++c)
+                        offsets[c + 1] = (int) Math.min((long) offsets[c] + counts[c - from], dataLen);
+                    used = to;
+                }
+                int chunkUsed = used;
+                size = offsets[chunkUsed];
+                td_time = new long[size];
+                td_value = new double[size];
+
+                // pass 2: parse every chunk into its own slice
+                double[][] ranges = new double[chunkUsed][];
+                long[] consumed = new long[chunkUsed];
+                pool.submit(() -> IntStream.range(0, chunkUsed).parallel().forEach(c -> {
+                    ranges[c] = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                    consumed[c] = parseChunk(bufs[c], offsets[c], offsets[c + 1], ranges[c]);
+                })).get();
+
+                bytesRead = dataStart;
+                for (int c = 0; c < chunkUsed; ++c) {
+                    min_v = Math.min(min_v, ranges[c][0]);
+                    max_v = Math.max(max_v, ranges[c][1]);
+                    bytesRead += consumed[c];
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * position after the first line break at or after pos
+     */
+    static long lineEnd(FileChannel channel, long pos, long fileSize) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        while (pos < fileSize) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; ++i)
+                if (buf.get(i) == '\n')
+                    return pos + i + 1;
+            pos += n;
+        }
+        return fileSize;
+    }
+
+    /**
+     * same rule as parseLine: a line counts unless it is blank
+     */
+    private static int countRows(ByteBuffer buf) {
+        int count = 0;
+        boolean content = false;
+        for (int i = 0, limit = buf.limit(); i < limit; ++i) {
+            byte b = buf.get(i);
+            if (b == '\n') {
+                if (content) count++;
+                content = false;
+            } else if (b != '\r') {
+                content = true;
+            }
+        }
+        return content ? count + 1 : count;
+    }
+
+    /**
+     * parse rows [from, to) of the result out of one chunk, returns the bytes consumed
+     */
+    private long parseChunk(ByteBuffer buf, int from, int to, double[] range) {
+        int pos = 0, limit = buf.limit(), idx = from;
+        while (pos < limit && idx < to) {
+            int end = pos;
+            while (end < limit && buf.get(end) != '\n') end++;
+            idx += parseLine(buf, pos, end, td_time, td_value, idx, range);
+            pos = end + 1;
+        }
+        return Math.min(pos, limit);
+    }
+
+    /**
+     * @throws NumberFormatException for an empty or malformed field
+     */
+    static long parseLong(ByteBuffer buf, int start, int end) {
+        boolean neg = false;
+        if (start < end && (buf.get(start) == '-' || buf.get(start) == '+')) {
+            neg = buf.get(start) == '-';
+            start++;
+        }
+        if (start >= end)
+            throw new NumberFormatException("empty timestamp");
+        long val = 0;
+        for (int i = start; i < end; ++i) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9)
+                return Long.parseLong(string(buf, start, end).trim());
+            val = val * 10 + d;
+        }
+        return neg ? -val : val;
+    }
+
+    /**
+     * exact for mantissas below 2^53 and exponents within 22 (Clinger's fast path),
+     * everything else goes through Double.parseDouble
+     *
+     * @throws NumberFormatException for an empty or malformed field, e.g. "123," or a row without a comma
+     */
+    static double parseDouble(ByteBuffer buf, int start, int end) {
+        int i = start;
+        boolean neg = false;
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            neg = buf.get(i) == '-';
+            i++;
+        }
+        long m = 0;
+        int exp = 0, digits = 0;
+        boolean dot = false, any = false;
+        for (; i < end; ++i) {
+            byte c = buf.get(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (digits < 18) {
+                    m = m * 10 + (c - '0');
+                    if (m != 0) digits++;
+                    if (dot) exp--;
+                } else {
+                    return Double.parseDouble(string(buf, start, end));
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                return Double.parseDouble(string(buf, start, end).trim());
+            }
+        }
+        if (!any)
+            throw new NumberFormatException(start >= end ? "empty value" : "malformed value " + string(buf, start, end));
+        if (i < end) { // exponent
+            i++;
+            if (i == end)
+                throw new NumberFormatException("malformed value " + string(buf, start, end));
+            boolean eneg = false;
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                eneg = buf.get(i) == '-';
+                i++;
+            }
+            int e = 0;
+            for (; i < end; ++i) {
+                int d = buf.get(i) - '0';
+                if (d < 0 || d > 9 || e > 10000)
+                    return Double.parseDouble(string(buf, start, end).trim());
+                e = e * 10 + d;
+            }
+            exp += eneg ? -e : e;
+        }
+        if (m > (1L << 53) || exp < -22 || exp > 22)
+            return Double.parseDouble(string(buf, start, end));
+        double v = exp >= 0 ? m * POW10[exp] : m / POW10[-exp];
+        return neg ? -v : v;
+    }
+
+    private static String string(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    public long[] getTd_time() {
+        return td_time;
+    }
+
+    public double[] getTd_value() {
+        return td_value;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * range of the raw values
+     */
+    public double getMax_v() {
+        return max_v;
+    }
+
+    public double getMin_v() {
+        return min_v;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
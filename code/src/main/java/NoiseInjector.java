@@ -0,0 +1,72 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel noise injection. The series is cut into blocks of a fixed size, and every block draws
+ * from its own SplittableRandom seeded with (seed, block index), so the dirty series only depends
+ * on the seed and the models, not on the number of threads. The models run in the given order.
+ */
+public class NoiseInjector {
+    static final int BLOCK = 1 << 16;
+
+    private final long seed;
+    private final int parallelism;
+    private final NoiseModel[] models;
+
+    public NoiseInjector(long seed, int parallelism, NoiseModel... models) {
+        this.seed = seed;
+        this.parallelism = parallelism;
+        this.models = models;
+    }
+
+    public double[] inject(double[] td_clean) {
+        double td_range = AddNoise.calRange(td_clean);
+        double[] td_dirty = new double[td_clean.length];
+        int blockNum = (td_clean.length + BLOCK - 1) / BLOCK;
+        if (parallelism <= 1 || blockNum <= 1) {
+            for (int b = 0; b < blockNum; ++b)
+                injectBlock(td_clean, td_dirty, b, td_range);
+            return td_dirty;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, blockNum).parallel()
+                    .forEach(b -> injectBlock(td_clean, td_dirty, b, td_range))).join();
+        } finally {
+            pool.shutdown();
+        }
+        return td_dirty;
+    }
+
+    private void injectBlock(double[] td_clean, double[] td_dirty, int b, double td_range) {
+        int from = b * BLOCK, to = Math.min(td_clean.length, from + BLOCK);
+        System.arraycopy(td_clean, from, td_dirty, from, to - from);
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + b);
+        for (NoiseModel model : models)
+            model.apply(td_dirty, from, to, td_range, random);
+    }
+
+    /**
+     * same as new BigDecimal(v).setScale(8, RoundingMode.HALF_UP).doubleValue()
+     * <p>
+     * For |v| * 1e8 < 2^32 the product is within 1e-6 of the exact value, so unless the fraction
+     * is that close to one half, floor decides the rounding, and m / 1e8 is the correctly rounded
+     * double of the decimal m * 10^-8. Everything else falls back to BigDecimal.
+     */
+    public static double round(double v) {
+        double t = Math.abs(v) * 1e8;
+        if (t < 4294967296.0) {
+            double f = Math.floor(t), frac = t - f;
+            if (Math.abs(frac - 0.5) > 1e-6) {
+                double r = (frac > 0.5 ? f + 1 : f) / 1e8;
+                return v < 0 && r != 0 ? -r : r;
+            }
+        }
+        if (Double.isNaN(v) || Double.isInfinite(v))
+            return v;
+        return new BigDecimal(v).setScale(8, RoundingMode.HALF_UP).doubleValue();
+    }
+}
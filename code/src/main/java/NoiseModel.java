@@ -0,0 +1,82 @@
+import java.util.SplittableRandom;
+
+/**
+ * One kind of error for NoiseInjector. rate is the percentage of corrupted points, range the
+ * error magnitude relative to the data range, length the maximal length of an error segment.
+ */
+public interface NoiseModel {
+    /**
+     * corrupt dirty[from, to), which holds the clean values on entry
+     */
+    void apply(double[] dirty, int from, int to, double td_range, SplittableRandom random);
+
+    /**
+     * single points with a gaussian error
+     */
+    static NoiseModel spike(double rate, double range) {
+        return (dirty, from, to, td_range, random) -> {
+            for (int i = from; i < to; ++i)
+                if (random.nextDouble() * 100. < rate)
+                    dirty[i] = NoiseInjector.round(dirty[i] + random.nextGaussian() * td_range * range);
+        };
+    }
+
+    /**
+     * segments with one constant gaussian error, the model of AddNoise
+     */
+    static NoiseModel segment(double rate, double range, int length) {
+        return segments(rate, length, (dirty, lo, hi, td_range, random) -> {
+            double err = random.nextGaussian() * td_range * range;
+            for (int i = lo; i < hi; ++i)
+                dirty[i] = NoiseInjector.round(dirty[i] + err);
+        });
+    }
+
+    /**
+     * segments shifted up or down by exactly range
+     */
+    static NoiseModel levelShift(double rate, double range, int length) {
+        return segments(rate, length, (dirty, lo, hi, td_range, random) -> {
+            double err = (random.nextBoolean() ? 1 : -1) * td_range * range;
+            for (int i = lo; i < hi; ++i)
+                dirty[i] = NoiseInjector.round(dirty[i] + err);
+        });
+    }
+
+    /**
+     * segments with an error growing linearly from 0 to a gaussian error
+     */
+    static NoiseModel drift(double rate, double range, int length) {
+        return segments(rate, length, (dirty, lo, hi, td_range, random) -> {
+            double err = random.nextGaussian() * td_range * range, step = err / (hi - lo);
+            for (int i = lo; i < hi; ++i)
+                dirty[i] = NoiseInjector.round(dirty[i] + step * (i - lo + 1));
+        });
+    }
+
+    /**
+     * segments of NaN
+     */
+    static NoiseModel missing(double rate, int length) {
+        return segments(rate, length, (dirty, lo, hi, td_range, random) -> {
+            for (int i = lo; i < hi; ++i)
+                dirty[i] = Double.NaN;
+        });
+    }
+
+    /**
+     * a segment starts at a point with probability rate / length %, its length is uniform in
+     * [1, length], and it is cut at the end of the block
+     */
+    private static NoiseModel segments(double rate, int length, NoiseModel shape) {
+        return (dirty, from, to, td_range, random) -> {
+            for (int i = from; i < to; ++i) {
+                if (random.nextDouble() * 100. < rate / length) {
+                    int end = Math.min(to, i + random.nextInt(length) + 1);
+                    shape.apply(dirty, i, end, td_range, random);
+                    i = end - 1;
+                }
+            }
+        };
+    }
+}
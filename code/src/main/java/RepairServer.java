@@ -0,0 +1,417 @@
+import Algorithm.Repair;
+import Algorithm.util.Counter;
+import Algorithm.util.Histogram;
+import Algorithm.util.LabelMask;
+import Algorithm.util.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repairs series posted by other processes on this host, so that a small repair costs a request
+ * instead of a JVM start:
+ * <pre>
+ * curl --data-binary @series.csv 'http://127.0.0.1:9405/repair?algorithm=SRD&amp;period=144'
+ * </pre>
+ * The body is a "timestamp,value[,label]" csv with an optional header, label 1 marking a value
+ * IMR may trust (the first three points always count as labeled), and the response is the
+ * repaired "timestamp,value" csv. Parameters: SRD period, k, max_iter; EWMA beta. /metrics
+ * serves the metrics.
+ * <p>
+ * Requests for the same algorithm and parameters queue on one batch, which up to workers drains
+ * take from at once: every drain repairs at most maxBatch queued requests back to back on the same
+ * warm code and then leaves its worker to other batches. Without load a request is repaired at
+ * once. Series are parsed into arrays of their size and repaired in place, and the handler formats
+ * the repair straight into the response through chunks pooled per batch. With maxBatch 0 every
+ * request is a task of its own on the workers, the plain pool the batching is measured against.
+ * Past MAX_BATCHES parameter sets the idle batches are dropped.
+ */
+public class RepairServer implements AutoCloseable {
+    private static final byte[] HEADER = "timestamp,value\n".getBytes();
+    private static final int ROW_BYTES = 64, CHUNK = 1 << 14, MAX_BATCHES = 64;
+
+    private final HttpServer server;
+    private final ExecutorService handlers, workers;
+    private final int workerNum, maxBatch;
+    private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final Histogram latency, queueWait, batchSize;
+    private final Counter requests, failed;
+
+    private static class Request {
+        final long[] td_time;
+        final double[] td_value;
+        final boolean[] td_bool; // null without a label column
+        final long enqueueTime = System.nanoTime();
+        final CompletableFuture<Void> result = new CompletableFuture<>(); // repaired in td_value
+
+        Request(long[] td_time, double[] td_value, boolean[] td_bool) {
+            this.td_time = td_time;
+            this.td_value = td_value;
+            this.td_bool = td_bool;
+        }
+    }
+
+    /**
+     * @param workers  threads repairing, each drains one batch at a time
+     * @param maxBatch requests per drain, a longer queue is drained in turns with other batches;
+     *                 0 runs every request as its own task
+     */
+    public RepairServer(int port, int workers, int maxBatch) throws IOException {
+        this.workerNum = workers;
+        this.maxBatch = maxBatch;
+        this.workers = Executors.newFixedThreadPool(workers);
+        // handlers only parse and wait, virtual threads in a build for JDK 21
+        ExecutorService virtual = VirtualThreads.perTask();
+        this.handlers = virtual != null ? virtual : Executors.newFixedThreadPool(Integer.getInteger("io.threads", 64));
+
+        MetricsRegistry registry = MetricsRegistry.global();
+        latency = registry.latency("seasonal_server_request_seconds", "Time from request to response");
+        queueWait = registry.latency("seasonal_server_queue_seconds", "Time a request waits for its batch");
+        batchSize = registry.histogram("seasonal_server_batch_size", "Requests repaired per drain");
+        requests = registry.counter("seasonal_server_requests_total", "Series repaired");
+        failed = registry.counter("seasonal_server_failed_total", "Requests answered with an error");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/repair", this::handle);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8",
+                        registry.scrape().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long startTime = System.nanoTime();
+            Batch batch = null;
+            Request request = null;
+            String error = null;
+            int status = 200;
+            try {
+                if (!exchange.getRequestMethod().equals("POST"))
+                    throw new IllegalArgumentException("POST a timestamp,value csv");
+                batch = batch(query(exchange.getRequestURI().getRawQuery()));
+                request = parse(exchange.getRequestBody().readAllBytes());
+                batch.submit(request).get();
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                error = e.getMessage();
+            } catch (ExecutionException | InterruptedException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                status = cause instanceof IllegalArgumentException ? 400 : 500;
+                error = cause.toString();
+            }
+            if (status == 200) {
+                batch.respond(exchange, request);
+            } else {
+                failed.inc();
+                respond(exchange, status, "text/plain; charset=utf-8", (error + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            latency.record(System.nanoTime() - startTime);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null)
+            for (String param : query.split("&")) {
+                String[] kv = param.split("=", 2);
+                params.put(kv[0], kv.length > 1 ? kv[1] : "");
+            }
+        return params;
+    }
+
+    /**
+     * the batch of the algorithm and its parameters, with their defaults filled in
+     */
+    private Batch batch(Map<String, String> params) {
+        String algorithm = params.getOrDefault("algorithm", "SRD");
+        String key;
+        Repair repair;
+        switch (algorithm) {
+            case "SRD" -> {
+                int period = Integer.parseInt(params.getOrDefault("period", "144"));
+                double k = Double.parseDouble(params.getOrDefault("k", "6"));
+                int max_iter = Integer.parseInt(params.getOrDefault("max_iter", "5"));
+                key = "SRD period=" + period + " k=" + k + " max_iter=" + max_iter;
+                repair = Repair.srd(period, k, max_iter);
+            }
+            case "EWMA" -> {
+                double beta = Double.parseDouble(params.getOrDefault("beta", "0.2"));
+                key = "EWMA beta=" + beta;
+                repair = Repair.ewma(beta);
+            }
+            case "SCREEN" -> {
+                key = algorithm;
+                repair = Repair.screen();
+            }
+            case "Lsgreedy" -> {
+                key = algorithm;
+                repair = Repair.lsgreedy();
+            }
+            case "IMR" -> {
+                key = algorithm;
+                repair = null;
+            }
+            default -> throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+        Batch batch = batches.computeIfAbsent(key, k -> new Batch(repair));
+        // a dropped batch still serves the requests that hold it, the next one gets a new batch
+        if (batches.size() > MAX_BATCHES)
+            batches.values().removeIf(b -> b != batch && b.isIdle());
+        return batch;
+    }
+
+    /**
+     * rows of "timestamp,value[,label]", a first line not starting with a number is a header
+     */
+    static Request parse(byte[] body) {
+        boolean header = body.length > 0 && !(body[0] == '-' || body[0] == '+' || (body[0] >= '0' && body[0] <= '9'));
+        // the rows first, so the arrays are allocated once at their size
+        int rows = 0;
+        for (int pos = header ? lineEnd(body, 0) + 1 : 0; pos < body.length; ) {
+            int end = lineEnd(body, pos);
+            if (end > pos && !(end == pos + 1 && body[pos] == '\r'))
+                rows++;
+            pos = end + 1;
+        }
+        long[] td_time = new long[rows];
+        double[] td_value = new double[rows];
+        boolean[] td_bool = null;
+        ByteBuffer buf = ByteBuffer.wrap(body);
+        int size = 0;
+        for (int pos = header ? lineEnd(body, 0) + 1 : 0; pos < body.length; ) {
+            int end = lineEnd(body, pos);
+            int lineEnd = end > pos && body[end - 1] == '\r' ? end - 1 : end;
+            if (lineEnd > pos) {
+                int comma = pos;
+                while (comma < lineEnd && body[comma] != ',') comma++;
+                if (comma == lineEnd)
+                    throw new IllegalArgumentException("Row " + (size + 1) + " has no value");
+                int valueEnd = comma + 1;
+                while (valueEnd < lineEnd && body[valueEnd] != ',') valueEnd++;
+                try {
+                    td_time[size] = MappedCsvReader.parseLong(buf, pos, comma);
+                    td_value[size] = MappedCsvReader.parseDouble(buf, comma + 1, valueEnd);
+                } catch (NumberFormatException e) {
+                    throw new NumberFormatException("Row " + (size + 1) + ": " + e.getMessage());
+                }
+                if (valueEnd < lineEnd) {
+                    if (td_bool == null)
+                        td_bool = new boolean[rows];
+                    td_bool[size] = valueEnd + 2 == lineEnd && body[valueEnd + 1] == '1';
+                }
+                size++;
+            }
+            pos = end + 1;
+        }
+        return new Request(td_time, td_value, td_bool);
+    }
+
+    /**
+     * the index of the '\n' ending the line at pos, or body.length
+     */
+    private static int lineEnd(byte[] body, int pos) {
+        while (pos < body.length && body[pos] != '\n') pos++;
+        return pos;
+    }
+
+    private class Batch {
+        private final Repair repair; // null for IMR, which is bound to the labels of each series
+        private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger drains = new AtomicInteger(); // scheduled or running, at most workerNum
+        private final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<>(); // CHUNK bytes, free
+
+        Batch(Repair repair) {
+            this.repair = repair;
+        }
+
+        CompletableFuture<Void> submit(Request request) {
+            if (maxBatch <= 0) {
+                workers.execute(() -> run(request));
+                return request.result;
+            }
+            queue.add(request);
+            schedule();
+            return request.result;
+        }
+
+        private void schedule() {
+            for (int d; (d = drains.get()) < workerNum; ) {
+                if (drains.compareAndSet(d, d + 1)) {
+                    workers.execute(this::drain);
+                    return;
+                }
+            }
+        }
+
+        private void drain() {
+            int n = 0;
+            for (Request request; n < maxBatch && (request = queue.poll()) != null; ++n)
+                run(request);
+            if (n > 0)
+                batchSize.record(n);
+            drains.decrementAndGet();
+            // requests left over by maxBatch, or that came when every drain was taken
+            if (!queue.isEmpty())
+                schedule();
+        }
+
+        boolean isIdle() {
+            return queue.isEmpty() && drains.get() == 0;
+        }
+
+        /**
+         * the repaired csv, chunked, formatted CHUNK bytes at a time into a chunk of the pool
+         */
+        void respond(HttpExchange exchange, Request request) throws IOException {
+            long[] td_time = request.td_time;
+            double[] td_value = request.td_value;
+            exchange.getResponseHeaders().set("Content-Type", "text/csv");
+            exchange.sendResponseHeaders(200, 0);
+            byte[] bytes = chunks.poll();
+            if (bytes == null)
+                bytes = new byte[CHUNK];
+            try (OutputStream out = exchange.getResponseBody()) {
+                System.arraycopy(HEADER, 0, bytes, 0, HEADER.length);
+                int pos = HEADER.length;
+                for (int i = 0; i < td_value.length; ++i) {
+                    if (pos > CHUNK - ROW_BYTES) {
+                        out.write(bytes, 0, pos);
+                        pos = 0;
+                    }
+                    pos = ByteFormat.putLong(bytes, pos, td_time[i]);
+                    bytes[pos++] = ',';
+                    pos = ByteFormat.putDouble(bytes, pos, td_value[i]);
+                    bytes[pos++] = '\n';
+                }
+                out.write(bytes, 0, pos);
+            } finally {
+                chunks.add(bytes);
+            }
+        }
+
+        private void run(Request request) {
+            queueWait.record(System.nanoTime() - request.enqueueTime);
+            try {
+                Repair repair = this.repair;
+                if (repair == null) {
+                    boolean[] td_bool = request.td_bool != null ? request.td_bool : new boolean[request.td_value.length];
+                    for (int i = 0; i < Math.min(3, td_bool.length); ++i)
+                        td_bool[i] = true;
+                    repair = Repair.imr(request.td_value.clone(), LabelMask.of(td_bool));
+                }
+                repair.repair(request.td_time, request.td_value, request.td_value);
+                requests.inc();
+                request.result.complete(null);
+            } catch (Throwable e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * clients posting the file concurrently, requests in total, to a server in this JVM: first to
+     * a plain pool (maxBatch 0) and then batched, after a warm-up of both
+     */
+    public static void main_load(String file, String query, int clients, int total) throws Exception {
+        byte[] body = Files.readAllBytes(Path.of(file));
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (boolean print : new boolean[]{false, true}) {
+            load(body, query, clients, print ? total : Math.min(total, 500), workers, 0, print);
+            load(body, query, clients, print ? total : Math.min(total, 500), workers, 64, print);
+        }
+    }
+
+    private static void load(byte[] body, String query, int clients, int total, int workers, int maxBatch, boolean print) throws Exception {
+        try (RepairServer server = new RepairServer(0, workers, maxBatch)) {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/repair?" + query);
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            Histogram latency = new MetricsRegistry().latency("latency", "");
+            AtomicInteger next = new AtomicInteger(), errors = new AtomicInteger();
+            long batches = server.batchSize.getCount(), startTime = System.nanoTime();
+            for (int c = 0; c < clients; ++c)
+                pool.execute(() -> {
+                    while (next.getAndIncrement() < total) {
+                        long requestTime = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri)
+                                    .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                                    HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() != 200 && errors.getAndIncrement() == 0)
+                                System.err.println(new String(response.body(), StandardCharsets.UTF_8));
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latency.record(System.nanoTime() - requestTime);
+                    }
+                });
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            double cost = (System.nanoTime() - startTime) / 1e9;
+            batches = server.batchSize.getCount() - batches;
+            if (print)
+                System.out.println(String.format("%s, %d clients: %d requests (%d failed) %.0f/s, latency p50 %.1fms p99 %.1fms%s",
+                        maxBatch > 0 ? "batched" : "plain pool", clients, total, errors.get(), total / cost,
+                        latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                        maxBatch > 0 ? String.format(", %d drains, %.1f requests per drain", batches, (double) total / batches) : ""));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("load")) { // load <csv> <query> <clients> <requests>
+            main_load(args[1], args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9405;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxBatch = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        RepairServer server = new RepairServer(port, workers, maxBatch);
+        System.out.println("repairing at http://127.0.0.1:" + server.getPort() + "/repair, metrics at /metrics");
+    }
+}
@@ -0,0 +1,263 @@
+import Algorithm.Repair;
+import Algorithm.util.ErrorAccumulator;
+import Algorithm.util.Histogram;
+import Algorithm.util.LabelMask;
+import Algorithm.util.MetricsRegistry;
+import Algorithm.util.RepairMetrics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Repairs many small series concurrently. Every series is one task that loads it, adds noise,
+ * repairs it, scores the repair against the clean series and writes the repaired csv.
+ * <p>
+ * In the virtual mode every task gets a virtual thread, so a task waiting on the file system holds
+ * no platform thread, and the CPU-bound part of a task takes one of the permits of a semaphore
+ * sized to the cores, so the repairs do not oversubscribe the carriers. Virtual threads need a
+ * build with JDK 21 (the jdk21 profile of the pom); a build for Java 17 runs the tasks of the
+ * virtual mode on a pool of io.threads platform threads under the same semaphore.
+ * The fixed mode is the usual pool of one platform thread per core for comparison.
+ * <p>
+ * Latency runs from the arrival of a series to its written repair, service time is the part of it
+ * spent running its task, not waiting for a thread or a permit. When everything is submitted at
+ * once the latency is mostly queue position, so main can also submit at a fixed arrival rate
+ * (open loop), with every arrival time set by the schedule.
+ */
+public class RepairService implements AutoCloseable {
+    private static final String[] COLUMNS = {"mode", "file", "repeat", "algorithm", "size", "rmse", "latency_ms", "service_ms"};
+
+    private final String mode;
+    private final ExecutorService executor;
+    private final Semaphore compute; // null when the pool itself is the limit
+    private final String algorithm;
+    private final Repair repair; // null for IMR, which is bound to the labels of each series
+    private final int period;
+    private final String outputDir;
+    private final ResultSink results;
+    private final Histogram latency, service;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param mode      virtual or fixed
+     * @param outputDir null to not write the repairs
+     * @param results   null to not record the scores
+     */
+    public RepairService(String mode, int permits, String algorithm, int period, String outputDir, ResultSink results) {
+        this.mode = mode;
+        if (mode.equals("fixed")) {
+            this.executor = Executors.newFixedThreadPool(permits);
+            this.compute = null;
+        } else {
+            ExecutorService virtual = VirtualThreads.perTask();
+            this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(Integer.getInteger("io.threads", 64));
+            this.compute = new Semaphore(permits);
+        }
+        this.algorithm = algorithm;
+        this.repair = switch (algorithm) {
+            case "SRD" -> Repair.srd(period, 6.0, 5);
+            case "SCREEN" -> Repair.screen();
+            case "Lsgreedy" -> Repair.lsgreedy();
+            case "EWMA" -> Repair.ewma(0.2);
+            case "IMR" -> null;
+            default -> throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        };
+        this.period = period;
+        this.outputDir = outputDir;
+        this.results = results;
+        MetricsRegistry registry = MetricsRegistry.global();
+        this.latency = registry.latency("seasonal_service_series_seconds", "Time from arrival to written per series", "mode", mode);
+        this.service = registry.latency("seasonal_service_task_seconds", "Time from task start to written per series", "mode", mode);
+        registry.gauge("seasonal_service_pending_series", "Series submitted and not yet written", pending::get, "mode", mode);
+    }
+
+    /**
+     * @return the RMSE of the repair
+     */
+    public CompletableFuture<Double> submit(String file, int repeat) {
+        return submit(file, repeat, System.nanoTime());
+    }
+
+    /**
+     * @param arrivalTime System.nanoTime() at which the series arrived, the latency is measured from it
+     */
+    public CompletableFuture<Double> submit(String file, int repeat, long arrivalTime) {
+        pending.incrementAndGet();
+        CompletableFuture<Double> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(run(file, repeat, arrivalTime));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+        return result;
+    }
+
+    private double run(String file, int repeat, long arrivalTime) throws Exception {
+        long startTime = System.nanoTime();
+        MappedCsvReader reader = new MappedCsvReader();
+        reader.read(file, Integer.MAX_VALUE);
+        long[] td_time = reader.getTd_time();
+        double[] td_clean = reader.getTd_value();
+        double max_v = reader.getMax_v(), min_v = reader.getMin_v();
+        for (int i = 0; i < td_clean.length; ++i)
+            td_clean[i] = (td_clean[i] - min_v) / (max_v - min_v);
+
+        double[] td_repair = new double[td_clean.length];
+        double rmse;
+        long waitTime = System.nanoTime(); // for a permit, which is queueing and not service
+        if (compute != null)
+            compute.acquire();
+        waitTime = System.nanoTime() - waitTime;
+        try {
+            double[] td_dirty = new AddNoise(td_clean, 5.0, 2.0, 25, 666 + repeat).getTd_dirty();
+            Repair repair = this.repair;
+            LabelMask mask = null;
+            if (repair == null) {
+                LabelData labelData = new LabelData(td_clean, td_dirty, 0.5, 666 + repeat);
+                mask = labelData.getLabelMask();
+                repair = Repair.imr(labelData.getTd_label(), mask);
+            }
+            RepairMetrics metrics = RepairMetrics.of(algorithm);
+            metrics.start();
+            try {
+                long repairTime = System.nanoTime();
+                int iterations = repair.repair(td_time, td_dirty, td_repair);
+                metrics.record(td_dirty, td_repair, iterations, System.nanoTime() - repairTime);
+            } finally {
+                metrics.end();
+            }
+
+            ErrorAccumulator acc = new ErrorAccumulator();
+            acc.add(td_clean, td_repair, mask, 0, td_clean.length);
+            rmse = acc.getRMSE();
+        } finally {
+            if (compute != null)
+                compute.release();
+        }
+
+        if (outputDir != null) {
+            String name = new File(file).getName();
+            int dot = name.lastIndexOf('.');
+            name = (dot < 0 ? name : name.substring(0, dot)) + (repeat > 0 ? "_" + repeat : "") + "_repair.csv";
+            new SeriesWriter(1 << 16).writeCsv(new File(outputDir, name).getPath(), td_time, td_repair);
+        }
+        long endTime = System.nanoTime();
+        latency.record(endTime - arrivalTime);
+        service.record(endTime - startTime - waitTime);
+        if (results != null)
+            results.write(mode, file, repeat, algorithm, td_clean.length, rmse, (endTime - arrivalTime) / 1e6,
+                    (endTime - startTime - waitTime) / 1e6);
+        return rmse;
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public Histogram getService() {
+        return service;
+    }
+
+    /**
+     * waits for the submitted series, an interrupt stops the tasks and is kept on the thread
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void report(String mode, int series, int failed, long nanos, Histogram latency, Histogram service) {
+        System.out.println(String.format("%s: %d series (%d failed) in %.2fs, %.0f series/s, latency p50 %.1fms p99 %.1fms max %.1fms,"
+                        + " service p50 %.1fms p99 %.1fms", mode, series, failed, nanos / 1e9, series / (nanos / 1e9),
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getValueAtPercentile(100) / 1e6, service.getValueAtPercentile(50) / 1e6,
+                service.getValueAtPercentile(99) / 1e6));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("RepairService <dir|csv>... [algorithm=SRD] [period=144] [repeat=10] [mode=both|virtual|fixed]"
+                    + " [permits=cores] [rate=series/s] [output=dir] [results=file.csv]");
+            System.exit(1);
+        }
+        List<String> files = new ArrayList<>();
+        String algorithm = "SRD", modes = "both", outputDir = null, resultsFile = null;
+        int period = 144, repeat = 10, permits = Runtime.getRuntime().availableProcessors();
+        double rate = 0; // arrivals per second, 0 submits everything at once
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length == 1) {
+                File file = new File(arg);
+                File[] csv = file.listFiles((dir, name) -> name.endsWith(".csv"));
+                if (csv == null)
+                    files.add(arg);
+                else
+                    Arrays.stream(csv).map(File::getPath).sorted().forEach(files::add);
+                continue;
+            }
+            switch (kv[0]) {
+                case "algorithm" -> algorithm = kv[1];
+                case "period" -> period = Integer.parseInt(kv[1]);
+                case "repeat" -> repeat = Integer.parseInt(kv[1]);
+                case "mode" -> modes = kv[1];
+                case "permits" -> permits = Integer.parseInt(kv[1]);
+                case "rate" -> rate = Double.parseDouble(kv[1]);
+                case "output" -> outputDir = kv[1];
+                case "results" -> resultsFile = kv[1];
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (!VirtualThreads.AVAILABLE && !modes.equals("fixed"))
+            System.out.println("built without virtual threads (see the jdk21 profile), the virtual mode runs on "
+                    + Integer.getInteger("io.threads", 64) + " platform threads");
+
+        try (ResultSink results = resultsFile == null ? null : new ResultSink(resultsFile, COLUMNS)) {
+            for (String mode : modes.equals("both") ? new String[]{"fixed", "virtual"} : new String[]{modes}) {
+                int failed = 0;
+                long startTime = System.nanoTime();
+                try (RepairService service = new RepairService(mode, permits, algorithm, period, outputDir, results)) {
+                    List<CompletableFuture<Double>> futures = new ArrayList<>();
+                    for (int r = 0; r < repeat; ++r) {
+                        for (String file : files) {
+                            long arrivalTime = startTime;
+                            if (rate > 0) {
+                                arrivalTime += (long) (futures.size() * 1e9 / rate);
+                                for (long wait; (wait = arrivalTime - System.nanoTime()) > 0; )
+                                    LockSupport.parkNanos(wait);
+                            }
+                            futures.add(service.submit(file, r, arrivalTime));
+                        }
+                    }
+                    for (CompletableFuture<Double> future : futures) {
+                        try {
+                            future.join();
+                        } catch (Exception e) {
+                            if (failed++ == 0)
+                                System.err.println(mode + ": " + e.getCause());
+                        }
+                    }
+                    report(mode, futures.size(), failed, System.nanoTime() - startTime, service.getLatency(), service.getService());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends records of fixed columns, one per line, to a csv or, for a .jsonl file, JSON lines. The
+ * file stays open for the whole run. Records are formatted into a buffer under a lock, so parallel
+ * runs can share one sink; the buffer goes to the channel when full and is forced to disk every
+ * flushMillis by a daemon thread and on close. The file is a RandomAccessFile and not a
+ * FileChannel, which closes itself when a writing thread is interrupted, so interrupting one of
+ * the parallel runs does not close the sink under the others.
+ * <p>
+ * Only whole lines are written, so after a crash at most the last line is cut short. Opening the
+ * file again truncates such a line and appends after the last complete record; the csv header is
+ * only written to an empty file.
+ */
+public class ResultSink implements AutoCloseable {
+    private static final int TAIL = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final String[] columns;
+    private final boolean json;
+    private final ByteBuffer buf;
+    private final ScheduledExecutorService flusher;
+    private IOException flushError;
+    private boolean dirty, closed;
+
+    public ResultSink(String filename, String... columns) throws IOException {
+        this(filename, 1000, columns);
+    }
+
+    public ResultSink(String filename, long flushMillis, String... columns) throws IOException {
+        this.columns = columns;
+        this.json = filename.endsWith(".jsonl");
+        this.buf = ByteBuffer.allocate(1 << 16);
+        this.file = new RandomAccessFile(filename, "rw");
+        file.seek(truncatePartialLine(file));
+        if (file.length() == 0 && !json) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < columns.length; ++i)
+                sb.append(i == 0 ? "" : ",").append(csv(columns[i]));
+            append(sb.append('\n'));
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "result-sink-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                synchronized (this) {
+                    flushError = e;
+                }
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * the size after dropping the bytes behind the last '\n', a line cut short by a crash
+     */
+    static long truncatePartialLine(RandomAccessFile file) throws IOException {
+        long size = file.length();
+        byte[] tail = new byte[TAIL];
+        for (long end = size; end > 0; ) {
+            long start = Math.max(0, end - TAIL);
+            file.seek(start);
+            file.readFully(tail, 0, (int) (end - start));
+            for (int i = (int) (end - start) - 1; i >= 0; --i) {
+                if (tail[i] == '\n') {
+                    long complete = start + i + 1;
+                    if (complete < size)
+                        file.setLength(complete);
+                    return complete;
+                }
+            }
+            end = start;
+        }
+        file.setLength(0);
+        return 0;
+    }
+
+    /**
+     * one value per column, numbers unquoted, null as an empty csv field or JSON null
+     */
+    public void write(Object... values) throws IOException {
+        if (values.length != columns.length)
+            throw new IllegalArgumentException(values.length + " values for " + columns.length + " columns");
+        StringBuilder sb = new StringBuilder(128);
+        if (json) {
+            sb.append('{');
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0) sb.append(',');
+                quote(sb, columns[i]).append(':');
+                Object v = values[i];
+                if (v == null || (v instanceof Double d && (d.isNaN() || d.isInfinite())))
+                    sb.append("null");
+                else if (v instanceof Number || v instanceof Boolean)
+                    sb.append(v);
+                else
+                    quote(sb, v.toString());
+            }
+            sb.append('}');
+        } else {
+            for (int i = 0; i < values.length; ++i)
+                sb.append(i == 0 ? "" : ",").append(values[i] == null ? "" : csv(values[i].toString()));
+        }
+        append(sb.append('\n'));
+    }
+
+    private synchronized void append(CharSequence line) throws IOException {
+        if (flushError != null)
+            throw flushError;
+        if (closed)
+            throw new IOException("ResultSink is closed");
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buf.remaining())
+            drain();
+        if (bytes.length > buf.capacity())
+            file.write(bytes);
+        else
+            buf.put(bytes);
+        dirty = true;
+    }
+
+    private void drain() throws IOException {
+        file.write(buf.array(), 0, buf.position());
+        buf.clear();
+    }
+
+    /**
+     * the buffered records to the file and the file to disk
+     */
+    public synchronized void flush() throws IOException {
+        if (!dirty)
+            return;
+        if (closed)
+            throw new IOException("ResultSink was closed with records not written");
+        if (buf.position() > 0)
+            drain();
+        file.getFD().sync();
+        dirty = false;
+    }
+
+    /**
+     * waits for a running flush, writes the rest and throws if any flush failed
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // flush() below still waits for the lock
+        }
+        synchronized (this) {
+            if (closed)
+                return;
+            try {
+                flush();
+                if (flushError != null)
+                    throw flushError;
+            } finally {
+                closed = true;
+                file.close();
+            }
+        }
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+            return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,423 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary columnar series: a 24 byte header {magic, kind, count, bytes of the time column},
+ * then the time column and the value column, each a sequence of big-endian longs.
+ * <p>
+ * RAW stores the plain longs and doubles, so single points can be read in place from the mapping.
+ * COMPRESSED stores the timestamps delta-of-delta encoded and the values XOR encoded against
+ * the previous value (Gorilla), as bit streams padded to whole longs.
+ * <p>
+ * The file is mapped in windows of 1 GB, so its size is not bound by the 2 GB of a buffer; read()
+ * still decodes into arrays, at most Integer.MAX_VALUE - 8 points of a file.
+ */
+public class SeriesFile {
+    public static final int RAW = 0, COMPRESSED = 1;
+    public static final String SUFFIX = ".srs";
+
+    private static final int MAGIC = 0x53525331; // "SRS1"
+    static final int HEADER = 24;
+    private static final long WINDOW = 1L << 30; // a multiple of 8, so no long spans two windows
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private final MappedByteBuffer[] windows;
+    private final long fileSize;
+    private final int kind;
+    private final long count;
+    private final long timeBytes;
+
+    private long[] td_time;
+    private double[] td_value;
+    private double max_v = Double.NEGATIVE_INFINITY, min_v = Double.POSITIVE_INFINITY;
+
+    public SeriesFile(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            ByteBuffer head = ByteBuffer.allocate(HEADER);
+            if (fileSize < HEADER || channel.read(head, 0) < HEADER || head.getInt(0) != MAGIC)
+                throw new IOException("Not a series file: " + filename);
+            kind = head.getInt(4);
+            count = head.getLong(8);
+            timeBytes = head.getLong(16);
+            if (count < 0 || timeBytes < 0 || timeBytes > fileSize - HEADER
+                    || kind == RAW && count > (fileSize - HEADER) / 16)
+                throw new IOException("Truncated series file: " + filename);
+            windows = new MappedByteBuffer[(int) ((fileSize + WINDOW - 1) / WINDOW)];
+            for (int w = 0; w < windows.length; ++w) {
+                long from = w * WINDOW;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(WINDOW, fileSize - from));
+            }
+        }
+    }
+
+    /**
+     * whether the file starts with the series magic
+     */
+    public static boolean isSeriesFile(String filename) {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            return channel.read(head, 0) == 4 && head.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * random access, RAW only
+     */
+    public long getTime(long i) {
+        checkRaw();
+        return getLong(windows, HEADER + 8 * i);
+    }
+
+    /**
+     * random access, RAW only
+     */
+    public double getValue(long i) {
+        checkRaw();
+        return Double.longBitsToDouble(getLong(windows, HEADER + timeBytes + 8 * i));
+    }
+
+    private static long getLong(ByteBuffer[] windows, long offset) {
+        return windows[(int) (offset / WINDOW)].getLong((int) (offset % WINDOW));
+    }
+
+    private void checkRaw() {
+        if (kind != RAW)
+            throw new UnsupportedOperationException("Random access needs a raw series file");
+    }
+
+    /**
+     * decode the first dataLen points
+     */
+    public void read(int dataLen) {
+        long n = Math.min(dataLen, count);
+        if (n > MAX_ARRAY)
+            throw new IllegalArgumentException("Cannot read " + n + " points into arrays, read at most " + MAX_ARRAY);
+        td_time = new long[(int) n];
+        td_value = new double[(int) n];
+        if (kind == RAW) {
+            copy(HEADER, td_time, null);
+            copy(HEADER + timeBytes, null, td_value);
+        } else {
+            decodeTime(new BitReader(windows, fileSize, HEADER), td_time);
+            decodeValue(new BitReader(windows, fileSize, HEADER + timeBytes), td_value);
+        }
+        for (double v : td_value) {
+            if (v > max_v) max_v = v;
+            if (v < min_v) min_v = v;
+        }
+    }
+
+    /**
+     * the longs or the doubles from offset on, window by window
+     */
+    private void copy(long offset, long[] longs, double[] doubles) {
+        int n = longs != null ? longs.length : doubles.length;
+        for (int done = 0; done < n; ) {
+            ByteBuffer window = windows[(int) (offset / WINDOW)].duplicate().position((int) (offset % WINDOW)).slice();
+            int len = Math.min(n - done, window.remaining() / 8);
+            if (longs != null)
+                window.asLongBuffer().get(longs, done, len);
+            else
+                window.asDoubleBuffer().get(doubles, done, len);
+            done += len;
+            offset += 8L * len;
+        }
+    }
+
+    public long[] getTd_time() {
+        return td_time;
+    }
+
+    public double[] getTd_value() {
+        return td_value;
+    }
+
+    public double getMax_v() {
+        return max_v;
+    }
+
+    public double getMin_v() {
+        return min_v;
+    }
+
+    public static void write(String filename, long[] time, double[] value, int kind) throws IOException {
+        int n = time.length;
+        long[] timeCol, valueCol;
+        if (kind == RAW) {
+            timeCol = time;
+            valueCol = new long[n];
+            for (int i = 0; i < n; ++i)
+                valueCol[i] = Double.doubleToRawLongBits(value[i]);
+        } else {
+            BitWriter timeWriter = new BitWriter(n / 4 + 2);
+            encodeTime(timeWriter, time);
+            timeCol = timeWriter.toArray();
+            BitWriter valueWriter = new BitWriter(n / 2 + 2);
+            encodeValue(valueWriter, value);
+            valueCol = valueWriter.toArray();
+        }
+
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+            out.putInt(MAGIC).putInt(kind).putLong(n).putLong(8L * timeCol.length);
+            put(channel, out, timeCol);
+            put(channel, out, valueCol);
+            flush(channel, out);
+            channel.force(true);
+        }
+    }
+
+    private static void put(FileChannel channel, ByteBuffer out, long[] col) throws IOException {
+        for (int done = 0; done < col.length; ) {
+            if (out.remaining() < 8)
+                flush(channel, out);
+            int len = Math.min(col.length - done, out.remaining() / 8);
+            out.asLongBuffer().put(col, done, len);
+            out.position(out.position() + 8 * len);
+            done += len;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * header of a RAW file with n points, the time column starts at HEADER, the values at HEADER + 8n
+     */
+    static ByteBuffer rawHeader(long n) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(RAW).putLong(n).putLong(8 * n).flip();
+        return header;
+    }
+
+    /**
+     * convert a "timestamp,value[,label]" csv, the label column is dropped
+     */
+    public static void convert(String csvName, String seriesName, int kind) throws IOException {
+        MappedCsvReader reader = new MappedCsvReader();
+        reader.read(csvName, Integer.MAX_VALUE);
+        write(seriesName, reader.getTd_time(), reader.getTd_value(), kind);
+    }
+
+    /**
+     * SeriesFile <csv file or directory> [raw]: writes name.srs next to every csv
+     */
+    public static void main(String[] args) throws IOException {
+        File in = new File(args[0]);
+        int kind = args.length > 1 && args[1].equals("raw") ? RAW : COMPRESSED;
+        File[] files = in.isDirectory() ? in.listFiles((dir, name) -> name.endsWith(".csv")) : new File[]{in};
+        if (files == null)
+            throw new IOException("Cannot list " + in);
+        for (File file : files) {
+            String name = file.getPath();
+            String out = name.substring(0, name.length() - 4) + SUFFIX;
+            convert(name, out, kind);
+            System.out.println(String.format("%s: %d -> %d bytes", name, file.length(), new File(out).length()));
+        }
+    }
+
+    // delta-of-delta: '0' | '10' 7 bits | '110' 9 bits | '1110' 12 bits | '1111' 64 bits
+    private static final int[] DOD_WIDTH = {7, 9, 12};
+
+    private static void encodeTime(BitWriter w, long[] time) {
+        int n = time.length;
+        if (n == 0) return;
+        w.write(time[0], 64);
+        if (n == 1) return;
+        long delta = time[1] - time[0];
+        w.write(delta, 64);
+        for (int i = 2; i < n; ++i) {
+            long d = time[i] - time[i - 1];
+            long dod = d - delta;
+            delta = d;
+            if (dod == 0) {
+                w.write(0, 1);
+                continue;
+            }
+            int b = 0;
+            while (b < DOD_WIDTH.length && (dod < -(1L << (DOD_WIDTH[b] - 1)) || dod >= 1L << (DOD_WIDTH[b] - 1)))
+                b++;
+            // b + 1 ones, then a zero unless it is the widest bucket
+            if (b < DOD_WIDTH.length) {
+                w.write((1L << (b + 2)) - 2, b + 2);
+                w.write(dod, DOD_WIDTH[b]);
+            } else {
+                w.write(0xF, 4);
+                w.write(dod, 64);
+            }
+        }
+    }
+
+    private static void decodeTime(BitReader r, long[] time) {
+        int n = time.length;
+        if (n == 0) return;
+        time[0] = r.read(64);
+        if (n == 1) return;
+        long delta = r.read(64);
+        time[1] = time[0] + delta;
+        for (int i = 2; i < n; ++i) {
+            int b = 0;
+            while (b < 4 && r.read(1) == 1)
+                b++;
+            if (b > 0) {
+                int width = b < 4 ? DOD_WIDTH[b - 1] : 64;
+                long dod = r.read(width);
+                delta += width == 64 ? dod : (dod << (64 - width)) >> (64 - width);
+            }
+            time[i] = time[i - 1] + delta;
+        }
+    }
+
+    // xor: '0' same value | '10' bits within the previous window | '11' 5 bits lead, 6 bits length - 1, bits
+    private static void encodeValue(BitWriter w, double[] value) {
+        int n = value.length;
+        if (n == 0) return;
+        long prev = Double.doubleToRawLongBits(value[0]);
+        w.write(prev, 64);
+        int prevLead = -1, prevTrail = 0;
+        for (int i = 1; i < n; ++i) {
+            long bits = Double.doubleToRawLongBits(value[i]);
+            long x = bits ^ prev;
+            prev = bits;
+            if (x == 0) {
+                w.write(0, 1);
+                continue;
+            }
+            int lead = Math.min(Long.numberOfLeadingZeros(x), 31), trail = Long.numberOfTrailingZeros(x);
+            if (prevLead >= 0 && lead >= prevLead && trail >= prevTrail) {
+                w.write(0b10, 2);
+                w.write(x >>> prevTrail, 64 - prevLead - prevTrail);
+            } else {
+                int len = 64 - lead - trail;
+                w.write(0b11, 2);
+                w.write(lead, 5);
+                w.write(len - 1, 6);
+                w.write(x >>> trail, len);
+                prevLead = lead;
+                prevTrail = trail;
+            }
+        }
+    }
+
+    private static void decodeValue(BitReader r, double[] value) {
+        int n = value.length;
+        if (n == 0) return;
+        long prev = r.read(64);
+        value[0] = Double.longBitsToDouble(prev);
+        int lead = 0, trail = 0;
+        for (int i = 1; i < n; ++i) {
+            if (r.read(1) == 1) {
+                if (r.read(1) == 1) {
+                    lead = (int) r.read(5);
+                    trail = 64 - lead - ((int) r.read(6) + 1);
+                }
+                prev ^= r.read(64 - lead - trail) << trail;
+            }
+            value[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    private static class BitWriter {
+        private long[] words;
+        private int size, bit; // full words, bits used in cur
+        private long cur;
+
+        BitWriter(int capacity) {
+            words = new long[Math.max(capacity, 4)];
+        }
+
+        /**
+         * the low n bits of v, 1 <= n <= 64
+         */
+        void write(long v, int n) {
+            if (n < 64) v &= (1L << n) - 1;
+            int free = 64 - bit;
+            if (n <= free) {
+                cur |= v << (free - n);
+                bit += n;
+                if (bit == 64) flush();
+            } else {
+                cur |= v >>> (n - free);
+                flush();
+                bit = n - free;
+                cur = v << (64 - bit);
+            }
+        }
+
+        private void flush() {
+            if (size == words.length)
+                words = Arrays.copyOf(words, size + (size >> 1));
+            words[size++] = cur;
+            cur = 0;
+            bit = 0;
+        }
+
+        long[] toArray() {
+            if (bit > 0) flush();
+            return Arrays.copyOf(words, size);
+        }
+    }
+
+    private static class BitReader {
+        private final ByteBuffer[] windows;
+        private final long limit;
+        private long pos; // byte offset of cur
+        private int bit; // bits consumed in cur
+        private long cur;
+
+        BitReader(ByteBuffer[] windows, long limit, long pos) {
+            this.windows = windows;
+            this.limit = limit;
+            this.pos = pos;
+            this.cur = limit >= pos + 8 ? getLong(windows, pos) : 0;
+        }
+
+        /**
+         * the next n bits, 1 <= n <= 64
+         */
+        long read(int n) {
+            int avail = 64 - bit;
+            if (n < avail) {
+                long r = (cur << bit) >>> (64 - n);
+                bit += n;
+                return r;
+            }
+            long r = avail == 64 ? cur : cur & ((1L << avail) - 1);
+            next();
+            int rest = n - avail;
+            if (rest > 0) {
+                r = (r << rest) | (cur >>> (64 - rest));
+                bit = rest;
+            }
+            return r;
+        }
+
+        private void next() {
+            pos += 8;
+            bit = 0;
+            cur = limit >= pos + 8 ? getLong(windows, pos) : 0;
+        }
+    }
+}
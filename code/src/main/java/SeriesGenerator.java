@@ -0,0 +1,227 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic seasonal series, streamed to disk block by block:
+ * value[i] = sum_k amplitude[k] * sin(2 pi i / period[k]) + trend * i + noise * N(0, 1),
+ * with one point every INTERVAL ms. Every block draws its noise from its own SplittableRandom,
+ * so the output does not depend on the number of threads.
+ * <p>
+ * CSV blocks are formatted in parallel, a wave at a time, and written in order. Binary output
+ * is a RAW SeriesFile, every block writes its slice of both columns at its own position.
+ */
+public class SeriesGenerator {
+    private static final int BLOCK = 1 << 16;
+    private static final int ROW_BYTES = 64;
+    private static final int DECIMALS = 6;
+    private static final long START = 1564588800000L, INTERVAL = 300000L;
+
+    private final long length;
+    private final int[] periods;
+    private final double[] amplitudes;
+    private final double trend, noise;
+    private final long seed;
+
+    public SeriesGenerator(long length, int[] periods, double[] amplitudes, double trend, double noise, long seed) {
+        if (periods.length != amplitudes.length)
+            throw new IllegalArgumentException("One amplitude per period");
+        this.length = length;
+        this.periods = periods;
+        this.amplitudes = amplitudes;
+        this.trend = trend;
+        this.noise = noise;
+        this.seed = seed;
+    }
+
+    /**
+     * points [from, to) of block b, values rounded to DECIMALS so that csv and binary agree
+     */
+    private void generate(int b, long[] time, double[] value) {
+        long from = (long) b * BLOCK;
+        int n = (int) Math.min(BLOCK, length - from);
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + b);
+        for (int i = 0; i < n; ++i) {
+            long idx = from + i;
+            double v = trend * idx + noise * random.nextGaussian();
+            for (int k = 0; k < periods.length; ++k)
+                v += amplitudes[k] * Math.sin(2 * Math.PI * (idx % periods[k]) / periods[k]);
+            time[i] = START + idx * INTERVAL;
+            value[i] = Math.round(v * 1e6) / 1e6;
+        }
+    }
+
+    private int blockNum() {
+        return (int) ((length + BLOCK - 1) / BLOCK);
+    }
+
+    public void writeCsv(String filename, int parallelism) throws IOException {
+        int blockNum = blockNum(), wave = Math.max(1, parallelism) * 2;
+        byte[][] bufs = new byte[wave][BLOCK * ROW_BYTES];
+        int[] sizes = new int[wave];
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try (FileChannel channel = open(filename)) {
+            channel.write(ByteBuffer.wrap("timestamp,value\n".getBytes()));
+            for (int first = 0; first < blockNum; first += wave) {
+                int from = first, to = Math.min(blockNum, first + wave);
+                pool.submit(() -> IntStream.range(from, to).parallel()
+                        .forEach(b -> sizes[b - from] = format(b, bufs[b - from]))).join();
+                for (int b = from; b < to; ++b)
+                    writeFully(channel, ByteBuffer.wrap(bufs[b - from], 0, sizes[b - from]), -1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int format(int b, byte[] buf) {
+        long[] time = new long[BLOCK];
+        double[] value = new double[BLOCK];
+        generate(b, time, value);
+        int n = (int) Math.min(BLOCK, length - (long) b * BLOCK), pos = 0;
+        for (int i = 0; i < n; ++i) {
+            pos = ByteFormat.putLong(buf, pos, time[i]);
+            buf[pos++] = ',';
+            pos = ByteFormat.putFixed(buf, pos, value[i], DECIMALS);
+            buf[pos++] = '\n';
+        }
+        return pos;
+    }
+
+    /**
+     * a RAW SeriesFile
+     */
+    public void writeBinary(String filename, int parallelism) throws IOException {
+        int blockNum = blockNum();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try (FileChannel channel = open(filename)) {
+            writeFully(channel, SeriesFile.rawHeader(length), 0);
+            long valueStart = SeriesFile.HEADER + 8 * length;
+            pool.submit(() -> IntStream.range(0, blockNum).parallel().forEach(b -> {
+                long[] time = new long[BLOCK];
+                double[] value = new double[BLOCK];
+                generate(b, time, value);
+                int n = (int) Math.min(BLOCK, length - (long) b * BLOCK);
+                ByteBuffer timeBuf = ByteBuffer.allocate(8 * n), valueBuf = ByteBuffer.allocate(8 * n);
+                timeBuf.asLongBuffer().put(time, 0, n);
+                valueBuf.asDoubleBuffer().put(value, 0, n);
+                long offset = 8L * BLOCK * b;
+                try {
+                    writeFully(channel, timeBuf, SeriesFile.HEADER + offset);
+                    writeFully(channel, valueBuf, valueStart + offset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * reopen a RAW SeriesFile written by writeBinary and compare every point with the generator
+     *
+     * @return the number of points that differ, a wrong size counts as all of them
+     */
+    public long verifyBinary(String filename, int parallelism) throws IOException {
+        SeriesFile series = new SeriesFile(filename);
+        if (series.getKind() != SeriesFile.RAW || series.size() != length)
+            return length;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            return pool.submit(() -> IntStream.range(0, blockNum()).parallel().mapToLong(b -> {
+                long[] time = new long[BLOCK];
+                double[] value = new double[BLOCK];
+                generate(b, time, value);
+                long from = (long) b * BLOCK, diff = 0;
+                int n = (int) Math.min(BLOCK, length - from);
+                for (int i = 0; i < n; ++i)
+                    if (series.getTime(from + i) != time[i]
+                            || Double.doubleToRawLongBits(series.getValue(from + i)) != Double.doubleToRawLongBits(value[i]))
+                        diff++;
+                return diff;
+            }).sum()).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static FileChannel open(String filename) throws IOException {
+        return FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * position < 0 appends at the channel position
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (position < 0)
+                channel.write(buf);
+            else
+                position += channel.write(buf, position);
+        }
+    }
+
+    /**
+     * SeriesGenerator <length> <csv|srs> [period:amplitude ...] [trend=t] [noise=s] [seed=n] [threads=n] [verify]
+     * writes data/synthetic/syn_<length>.<csv|srs>, verify reads an srs back and compares every point
+     */
+    public static void main(String[] args) throws IOException {
+        long length = Long.parseLong(args[0]);
+        boolean csv = args.length < 2 || args[1].equals("csv");
+        int[] periods = new int[0];
+        double[] amplitudes = new double[0];
+        double trend = 0, noise = 0.1;
+        long seed = 666;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        for (int i = 2; i < args.length; ++i) {
+            String[] kv = args[i].split("[=:]");
+            switch (kv[0]) {
+                case "verify" -> verify = true;
+                case "trend" -> trend = Double.parseDouble(kv[1]);
+                case "noise" -> noise = Double.parseDouble(kv[1]);
+                case "seed" -> seed = Long.parseLong(kv[1]);
+                case "threads" -> threads = Integer.parseInt(kv[1]);
+                default -> {
+                    periods = Arrays.copyOf(periods, periods.length + 1);
+                    amplitudes = Arrays.copyOf(amplitudes, amplitudes.length + 1);
+                    periods[periods.length - 1] = Integer.parseInt(kv[0]);
+                    amplitudes[amplitudes.length - 1] = kv.length > 1 ? Double.parseDouble(kv[1]) : 1;
+                }
+            }
+        }
+        if (periods.length == 0) {
+            periods = new int[]{144};
+            amplitudes = new double[]{1};
+        }
+
+        new File("data/synthetic").mkdirs();
+        String filename = "data/synthetic/syn_" + length + (csv ? ".csv" : SeriesFile.SUFFIX);
+        SeriesGenerator generator = new SeriesGenerator(length, periods, amplitudes, trend, noise, seed);
+        long startTime = System.nanoTime();
+        if (csv)
+            generator.writeCsv(filename, threads);
+        else
+            generator.writeBinary(filename, threads);
+        double cost = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("%s: %d points %.1fs %.1fM points/s", filename, length, cost, length / cost / 1e6));
+        if (verify && !csv) {
+            startTime = System.nanoTime();
+            long diff = generator.verifyBinary(filename, threads);
+            System.out.println(String.format("%s: %d points read back in %.1fs, %d differ", filename, length,
+                    (System.nanoTime() - startTime) / 1e9, diff));
+            if (diff != 0)
+                System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes "timestamp,value" csv files through a FileChannel. Rows are formatted with ByteFormat
+ * into one reusable buffer, so a writer allocates nothing per row and can be reused across files.
+ * Values are written in the shortest form that parses back to the same double, the digits of
+ * Double.toString.
+ * <p>
+ * td_time may be null, then the row index is written as the timestamp.
+ */
+public class SeriesWriter {
+    private static final int ROW_BYTES = 64;
+    private static final byte[] HEADER = "timestamp,value\n".getBytes();
+
+    private final byte[] bytes;
+    private final ByteBuffer buf;
+
+    public SeriesWriter() {
+        this(1 << 20);
+    }
+
+    public SeriesWriter(int bufferSize) {
+        this.bytes = new byte[Math.max(bufferSize, ROW_BYTES)];
+        this.buf = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @return bytes written
+     */
+    public long writeCsv(String filename, long[] td_time, double[] td_value) throws IOException {
+        return writeCsv(filename, td_time, td_value, null);
+    }
+
+    /**
+     * only the rows whose value differs from td_original, all rows when td_original is null
+     *
+     * @return bytes written
+     */
+    public long writeCsv(String filename, long[] td_time, double[] td_value, double[] td_original) throws IOException {
+        try (FileChannel channel = open(filename)) {
+            System.arraycopy(HEADER, 0, bytes, 0, HEADER.length);
+            int pos = HEADER.length;
+            long written = 0;
+            for (int i = 0; i < td_value.length; ++i) {
+                if (td_original != null && Double.doubleToLongBits(td_value[i]) == Double.doubleToLongBits(td_original[i]))
+                    continue;
+                if (pos > bytes.length - ROW_BYTES) {
+                    written += flush(channel, pos);
+                    pos = 0;
+                }
+                pos = ByteFormat.putLong(bytes, pos, td_time == null ? i : td_time[i]);
+                bytes[pos++] = ',';
+                pos = ByteFormat.putDouble(bytes, pos, td_value[i]);
+                bytes[pos++] = '\n';
+            }
+            return written + flush(channel, pos);
+        }
+    }
+
+    /**
+     * a SeriesFile, RAW or COMPRESSED
+     *
+     * @return bytes written
+     */
+    public long writeBinary(String filename, long[] td_time, double[] td_value, int kind) throws IOException {
+        if (td_time == null) {
+            td_time = new long[td_value.length];
+            for (int i = 0; i < td_time.length; ++i)
+                td_time[i] = i;
+        }
+        SeriesFile.write(filename, td_time, td_value, kind);
+        return Path.of(filename).toFile().length();
+    }
+
+    private int flush(FileChannel channel, int pos) throws IOException {
+        buf.clear().limit(pos);
+        while (buf.hasRemaining())
+            channel.write(buf);
+        return pos;
+    }
+
+    private static FileChannel open(String filename) throws IOException {
+        return FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The executor of one virtual thread per task, which needs Java 21: this build is for an older JDK
+ * and has none, see the jdk21 profile of the pom.
+ */
+public class VirtualThreads {
+    public static final boolean AVAILABLE = false;
+
+    /**
+     * null, the JDK of this build has no virtual threads
+     */
+    public static ExecutorService perTask() {
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executor of one virtual thread per task, built by the jdk21 profile of the pom.
+ */
+public class VirtualThreads {
+    public static final boolean AVAILABLE = true;
+
+    public static ExecutorService perTask() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}